@@ -0,0 +1,31 @@
+package mcts.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行所有基准测试，并打开GC分析器：除了每秒操作数，还报告每次操作分配的字节数（gc.alloc.rate.norm）
+ *
+ * 参数为要运行的测试的正则表达式，例如 GobangBenchmark.copy，没有参数运行全部
+ *
+ * @author Jervis
+ *
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException {
+		OptionsBuilder builder = new OptionsBuilder();
+		if (args.length == 0) {
+			builder.include("mcts.bench.");
+		}
+		for (String pattern : args) {
+			builder.include(pattern);
+		}
+		Options options = builder.addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,120 @@
+package mcts.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mcts.abs.Environment;
+import mcts.entity.Gobang;
+import mcts.entity.Observation;
+import mcts.entity.PatternEvaluator;
+import mcts.exception.IllegalPointException;
+
+/**
+ * 棋盘操作的基准测试：下子、五连判断、复制、可下点、形势判断、快速走子
+ *
+ * 会修改棋盘的操作（下子）每次都撤销，棋盘在整个测试中保持固定局面。
+ *
+ * @author Jervis
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GobangBenchmark {
+
+	@Param({ "opening", "middlegame", "late" })
+	public String phase;
+
+	private Gobang board;
+	/**
+	 * 测试下子使用的点：第一个下了不会五连的可下点
+	 */
+	private int x, y;
+
+	@Setup
+	public void setup() {
+		this.board = Positions.board(this.phase);
+		for (int move : this.board.illegalPoints()) {
+			this.x = move / Positions.SIZE;
+			this.y = move % Positions.SIZE;
+			if (!this.board.isFive(this.x, this.y, Gobang.POINT_AI))
+				break;
+		}
+		// 第一次调用时才建立增量形势判断
+		this.board.judgmentValue();
+	}
+
+	/**
+	 * 下子（带合法性检查和返回的棋盘复制）并撤销
+	 */
+	@Benchmark
+	public Observation<int[][]> action() throws IllegalPointException {
+		Observation<int[][]> observation = this.board.action(this.x, this.y, Gobang.POINT_AI);
+		this.board.unmake(this.x, this.y);
+		return observation;
+	}
+
+	/**
+	 * 模拟对局使用的下子并撤销，和 {@link #action()} 对比
+	 */
+	@Benchmark
+	public boolean makeUnmake() {
+		boolean done = this.board.make(this.x, this.y, Gobang.POINT_AI);
+		this.board.unmake(this.x, this.y);
+		return done;
+	}
+
+	/**
+	 * 五连判断（isDone 是私有的，通过 isFive 调用）
+	 */
+	@Benchmark
+	public boolean isDone() {
+		return this.board.isFive(this.x, this.y, Gobang.POINT_AI);
+	}
+
+	@Benchmark
+	public Environment<int[][]> copy() {
+		return this.board.copy();
+	}
+
+	@Benchmark
+	public int[] illegalPoints() {
+		return this.board.illegalPoints();
+	}
+
+	/**
+	 * 增量形势判断（得分已经算好，只有返回对象的开销）
+	 */
+	@Benchmark
+	public Observation<int[][]> formalJudgment() {
+		return this.board.formalJudgment();
+	}
+
+	/**
+	 * 从头计算所有线的形势判断
+	 */
+	@Benchmark
+	public double formalJudgmentFull() {
+		return new PatternEvaluator(this.board.getBroad()).getValue();
+	}
+
+	@Benchmark
+	public int speedPoint() {
+		return this.board.speedPoint();
+	}
+
+}
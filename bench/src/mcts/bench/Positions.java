@@ -0,0 +1,83 @@
+package mcts.bench;
+
+import mcts.entity.Gobang;
+
+/**
+ * 基准测试使用的固定局面（15 * 15 棋盘），开局、中局、残局各一个
+ *
+ * 每个局面是一串坐标 x, y，第一步天元由AI下，之后双方轮流，最后一步是玩家下的，接下来轮到AI。
+ * 局面是固定的，不同版本、不同棋盘表示之间的结果可以直接比较；局面中没有五连。
+ *
+ * @author Jervis
+ *
+ */
+public final class Positions {
+
+	/**
+	 * 棋盘大小
+	 */
+	public static final int SIZE = 15;
+
+	/**
+	 * 开局：6个子
+	 */
+	private static final int[] OPENING = { 7, 7, 8, 6, 9, 5, 8, 5, 6, 8, 10, 5 };
+	/**
+	 * 中局：24个子，有冲四
+	 */
+	private static final int[] MIDDLEGAME = { 7, 7, 8, 6, 9, 6, 10, 5, 9, 7, 10, 6, 10, 4, 7, 8, 7, 5, 6, 6, 11, 7,
+			7, 6, 11, 5, 9, 5, 9, 8, 8, 5, 6, 4, 7, 9, 12, 8, 5, 4, 7, 10, 11, 3, 10, 7, 12, 6 };
+	/**
+	 * 残局：70个子，可下点多，形势判断的线多
+	 */
+	private static final int[] LATE = { 7, 7, 8, 8, 6, 6, 7, 9, 6, 5, 9, 7, 6, 8, 6, 9, 7, 10, 6, 10, 8, 11, 8, 6, 7,
+			12, 5, 4, 9, 10, 5, 9, 9, 12, 9, 8, 8, 7, 7, 4, 6, 12, 7, 6, 6, 3, 5, 13, 10, 7, 10, 12, 4, 10, 9, 9, 6, 4,
+			9, 11, 5, 10, 4, 13, 5, 7, 4, 12, 3, 13, 3, 9, 2, 14, 1, 14, 11, 6, 3, 12, 10, 5, 2, 8, 2, 9, 1, 10, 1, 9, 4,
+			5, 12, 6, 3, 7, 0, 10, 11, 13, 4, 3, 3, 5, 5, 12, 2, 10, 7, 8, 2, 12, 3, 10, 11, 12, 2, 13, 1, 8, 7, 13, 4,
+			11, 4, 8, 6, 13, 3, 4, 10, 9, 4, 6, 9, 6, 4, 2, 7, 14 };
+
+	private Positions() {
+	}
+
+	/**
+	 * 按名字创建局面的新棋盘（不是单例）
+	 *
+	 * @param phase
+	 *            opening、middlegame 或者 late
+	 * @return 摆好子的棋盘
+	 */
+	public static Gobang board(String phase) {
+		int[] moves = moves(phase);
+		Gobang board = Gobang.newGobang(SIZE, SIZE);
+		for (int i = 0; i < moves.length; i += 2) {
+			board.make(moves[i], moves[i + 1], i / 2 % 2 == 0 ? Gobang.POINT_AI : Gobang.POINT_PLAYER);
+		}
+		return board;
+	}
+
+	/**
+	 * 局面的最后一步（玩家下的），作为根节点的 lastMove
+	 *
+	 * @param phase
+	 *            opening、middlegame 或者 late
+	 * @return 点的编码（x * 列数 + y）
+	 */
+	public static int lastMove(String phase) {
+		int[] moves = moves(phase);
+		return moves[moves.length - 2] * SIZE + moves[moves.length - 1];
+	}
+
+	private static int[] moves(String phase) {
+		switch (phase) {
+		case "opening":
+			return OPENING;
+		case "middlegame":
+			return MIDDLEGAME;
+		case "late":
+			return LATE;
+		default:
+			throw new IllegalArgumentException("unknown phase: " + phase);
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package mcts.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mcts.entity.GobangUCT;
+import mcts.entity.Node;
+import mcts.entity.Observation;
+import mcts.exception.IllegalPointException;
+
+/**
+ * 搜索的基准测试：一次选择，和一次完整的模拟（选择、扩展、模拟对局、传播）
+ *
+ * 每一轮测量之前重新建树并预先模拟 {@link #WARM_PLAYOUTS} 次，树的形状和实际搜索一步时相近；
+ * 完整模拟会让树继续长大，一轮测量中的树逐渐变深，和实际搜索一样。
+ *
+ * @author Jervis
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+	/**
+	 * 建树时预先模拟的次数
+	 */
+	public static final int WARM_PLAYOUTS = 2000;
+
+	@Param({ "opening", "middlegame", "late" })
+	public String phase;
+
+	/**
+	 * 节点是否保存棋盘
+	 */
+	@Param({ "true", "false" })
+	public boolean boardless;
+
+	private GobangUCT search;
+	private Node root;
+
+	@Setup(Level.Iteration)
+	public void setup() throws IllegalPointException {
+		this.search = new GobangUCT(null, 0, this.boardless);
+		this.root = new Node(Positions.lastMove(this.phase), Positions.board(this.phase));
+		this.search.expansion(this.root);
+		for (int i = 0; i < WARM_PLAYOUTS; i++) {
+			this.search.simulation(this.root);
+		}
+	}
+
+	/**
+	 * 从根节点选择到叶节点，不修改树（没有虚拟损失，渐进扩展在预先模拟时已经稳定）
+	 */
+	@Benchmark
+	public Node selection() {
+		return this.search.selection(this.root);
+	}
+
+	@Benchmark
+	public Observation<int[][]> simulation() {
+		return this.search.simulation(this.root);
+	}
+
+}
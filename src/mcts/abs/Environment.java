@@ -1,7 +1,6 @@
 package mcts.abs;
 
 import mcts.entity.Observation;
-import mcts.entity.Point;
 import mcts.exception.IllegalPointException;
 
 /**
@@ -15,10 +14,10 @@ public interface Environment<E> {
 	
 	/**
 	 * 在环境中判断，参数点 是否合法
-	 * @param point	点对象
+	 * @param move	点的编码（x * 列数 + y）
 	 * @return
 	 */
-	boolean isIllegal(Point point);
+	boolean isIllegal(int move);
 	
 	/**
 	 * 在环境中判断，参数点 是否合法
@@ -40,12 +39,12 @@ public interface Environment<E> {
 	
 	/**
 	 * 行动方法
-	 * @param point	点对象
+	 * @param move	点的编码（x * 列数 + y）
 	 * @param who	玩家 or AI
 	 * @return		返回对象包括是否结束，环境评分等信息
 	 * @throws IllegalPointException	当前点不合法则会抛出此异常
 	 */
-	Observation<E> action(Point point, int who) throws IllegalPointException;
+	Observation<E> action(int move, int who) throws IllegalPointException;
 	
 	/**
 	 * 行动方法
@@ -0,0 +1,56 @@
+package mcts.abs;
+
+/**
+ * @author Jervis
+ *
+ *	模拟对局使用的可变棋盘：下子、撤销不做合法性检查、不创建任何对象，
+ *	{@link mcts.entity.RolloutEngine} 在它上面完成整局随机对局
+ */
+public interface RolloutBoard {
+
+	/**
+	 * @return 棋盘行数
+	 */
+	int getRow();
+
+	/**
+	 * @return 棋盘列数
+	 */
+	int getCol();
+
+	/**
+	 * 下子，不做合法性检查
+	 * @param x 坐标x
+	 * @param y 坐标y
+	 * @param who	玩家 or AI
+	 * @return	当前下法是否结束游戏
+	 */
+	boolean make(int x, int y, int who);
+
+	/**
+	 * 撤销下子，与 {@link #make(int, int, int)} 对应
+	 * @param x 坐标x
+	 * @param y 坐标y
+	 */
+	void unmake(int x, int y);
+
+	/**
+	 * 形势判断的得分
+	 * @return	判断当前局势得分，不为0则表示形势判断有结果
+	 */
+	double judgmentValue();
+
+	/**
+	 * 可下点数量（空点并且周围有子）
+	 * @return	可下点数量
+	 */
+	int candidateCount();
+
+	/**
+	 * 第index个可下点，需要先调用 {@link #candidateCount()}
+	 * @param index	下标
+	 * @return	点的编码（x * 列数 + y）
+	 */
+	int candidateAt(int index);
+
+}
@@ -0,0 +1,21 @@
+package mcts.abs;
+
+import mcts.entity.SearchResult;
+
+/**
+ * @author Jervis
+ *
+ *	搜索进度回调
+ *
+ *	在搜索线程上调用，不要做耗时的操作；界面程序需要自己切换到界面线程（例如 JavaFX 的 Platform.runLater）。
+ */
+@FunctionalInterface
+public interface SearchListener {
+
+	/**
+	 * 搜索进度
+	 * @param result	还在进行的搜索结果：根节点的统计是当前的，用时到这一次回调为止，每个线程的模拟次数要等搜索结束才有
+	 */
+	void progress(SearchResult result);
+
+}
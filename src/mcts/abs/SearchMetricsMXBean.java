@@ -0,0 +1,63 @@
+package mcts.abs;
+
+/**
+ * @author Jervis
+ *
+ *	搜索统计的JMX接口，注册名为 mcts:type=SearchMetrics，可以用 jconsole、VisualVM 或者任何JMX客户端查看
+ *
+ *	Last开头的是最近一次搜索的统计，Total开头的是进程启动以来所有搜索的累计。
+ */
+public interface SearchMetricsMXBean {
+
+	/**
+	 * @return	搜索次数
+	 */
+	long getSearches();
+
+	long getTotalSimulations();
+
+	long getTotalNodesExpanded();
+
+	/**
+	 * @return	所有搜索的总用时，毫秒
+	 */
+	long getTotalElapsedMillis();
+
+	/**
+	 * @return	所有搜索分配的内存，字节
+	 */
+	long getTotalAllocatedBytes();
+
+	int getLastThreads();
+
+	long getLastSimulations();
+
+	long getLastNodesExpanded();
+
+	int getLastMaxDepth();
+
+	double getLastAverageDepth();
+
+	long getLastElapsedMillis();
+
+	double getLastPlayoutsPerSecond();
+
+	/**
+	 * 最近一次搜索各阶段的用时（所有线程相加），毫秒
+	 */
+	double getLastSelectionMillis();
+
+	double getLastExpansionMillis();
+
+	double getLastPlayoutMillis();
+
+	double getLastBackPropagationMillis();
+
+	long getLastAllocatedBytes();
+
+	/**
+	 * @return	最近一次搜索的主要变化
+	 */
+	String getLastPrincipalVariation();
+
+}
@@ -0,0 +1,41 @@
+package mcts.abs;
+
+/**
+ * @author Jervis
+ *
+ *	定义选择阶段的树策略：给每个子节点打分，选择时一次遍历取最好的子节点
+ *
+ *	父节点相关的量（例如 log(父节点模拟次数)）在每个节点选择时只通过 {@link #prepare(int)} 计算一次，
+ *	再传给每个子节点的 {@link #score(double, double, int, double, double)}。
+ *	总是取分数最大的子节点：下一步是玩家时，平均分取反之后再传给 {@link #score(double, double, int, double, double)}，
+ *	所以策略只需要按"平均分越大越好"打分。
+ */
+public interface TreePolicy {
+
+	/**
+	 * 父节点的准备值，每个节点选择时计算一次
+	 * @param parentN	父节点模拟次数
+	 * @return		传给 {@link #score(double, double, int, double, double)} 的父节点量
+	 */
+	double prepare(int parentN);
+
+	/**
+	 * 子节点的分数
+	 * @param value		子节点平均分，从下这一步的一方来看（下一步是玩家时已经取反）
+	 * @param squares	子节点得分平方和
+	 * @param n			子节点模拟次数，{@link #visitUnvisitedFirst()} 为true时大于0，否则可以为0
+	 * @param prior		子节点先验概率
+	 * @param parent	{@link #prepare(int)} 的结果
+	 * @return		分数
+	 */
+	double score(double value, double squares, int n, double prior, double parent);
+
+	/**
+	 * 从来没有模拟过的子节点是否直接选择（UCB类策略），否则用 {@link #score(double, double, int, double, double)} 的n=0打分
+	 * @return	true 直接选择第一个没有模拟过的子节点
+	 */
+	default boolean visitUnvisitedFirst() {
+		return true;
+	}
+
+}
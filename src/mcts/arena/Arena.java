@@ -0,0 +1,339 @@
+package mcts.arena;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mcts.abs.TreePolicy;
+import mcts.entity.Gobang;
+import mcts.entity.GobangUCT;
+import mcts.entity.Node;
+import mcts.entity.Observation;
+import mcts.entity.OpeningBookBuilder;
+import mcts.entity.PuctPolicy;
+import mcts.entity.SearchResult;
+import mcts.entity.ThreatSolver;
+import mcts.entity.TimeManager;
+import mcts.entity.Ucb1Policy;
+import mcts.entity.Ucb1TunedPolicy;
+import mcts.exception.IllegalPointException;
+
+/**
+ * 无界面的对弈场：两种引擎配置同时下很多局，统计强弱和速度
+ *
+ * 每局单线程，多局在线程池中同时进行。每两局用同一个随机开局，双方交换先后手。
+ * 搜索总是从AI的视角进行，所以每局有两个棋盘：每一方的棋盘上自己的子是AI，对方的子是玩家，每一步同时下在两个棋盘上。
+ * 每一步先用快速走子（五连或者挡五连），没有再用 {@link GobangUCT} 搜索。
+ *
+ * @author Jervis
+ *
+ */
+public class Arena {
+
+	private final EngineConfig a, b;
+	/**
+	 * 对局数
+	 */
+	private final int games;
+	/**
+	 * 棋盘大小
+	 */
+	private final int size;
+	/**
+	 * 同时进行的对局数
+	 */
+	private final int threads;
+	/**
+	 * 随机开局的步数（第一步总是天元），至少为1
+	 */
+	private int openingMoves = 2;
+	/**
+	 * 对局记录文件，为null时不记录；格式见 {@link OpeningBookBuilder}，可以用来生成开局库
+	 */
+	private Path record;
+
+	/**
+	 * @param a
+	 *            A方配置
+	 * @param b
+	 *            B方配置
+	 * @param games
+	 *            对局数
+	 * @param size
+	 *            棋盘大小
+	 * @param threads
+	 *            同时进行的对局数
+	 */
+	public Arena(EngineConfig a, EngineConfig b, int games, int size, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		this.a = a;
+		this.b = b;
+		this.games = games;
+		this.size = size;
+		this.threads = threads;
+	}
+
+	/**
+	 * 下完所有对局，每完成十分之一打印一次进度
+	 *
+	 * @return 统计结果
+	 * @throws InterruptedException
+	 *             等待对局结果时被中断
+	 * @throws IOException
+	 *             写对局记录失败
+	 */
+	public ArenaResult run() throws InterruptedException, IOException {
+		ArenaResult result = new ArenaResult(this.a, this.b);
+		BufferedWriter writer = this.record == null ? null
+				: Files.newBufferedWriter(this.record, StandardCharsets.UTF_8);
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+			Thread thread = new Thread(runnable, "arena-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<Game>> futures = new ArrayList<>(this.games);
+			for (int i = 0; i < this.games; i++) {
+				int game = i;
+				futures.add(executor.submit(() -> play(game)));
+			}
+			int step = Math.max(1, this.games / 10);
+			for (Future<Game> future : futures) {
+				try {
+					Game game = future.get();
+					result.add(game);
+					if (writer != null) {
+						writer.write(OpeningBookBuilder.format(Arrays.copyOf(game.moveList, game.plies), this.size,
+								game.winner < 0 ? -1 : game.winner == game.first ? 0 : 1));
+						writer.newLine();
+					}
+				} catch (ExecutionException e) {
+					e.printStackTrace();
+				}
+				int done = result.getGames();
+				if (done % step == 0)
+					System.out.printf("%d/%d score=%.3f elo=%+.1f%n", done, this.games, result.getScore(),
+							result.getElo());
+			}
+		} finally {
+			executor.shutdownNow();
+			if (writer != null)
+				writer.close();
+		}
+		return result;
+	}
+
+	/**
+	 * 下一局
+	 *
+	 * @param game
+	 *            第几局，偶数局A先手，奇数局B先手，相邻两局开局相同
+	 * @return 对局记录
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	Game play(int game) throws IllegalPointException {
+		EngineConfig[] configs = { this.a, this.b };
+		GobangUCT[] searches = { this.a.newSearch(), this.b.newSearch() };
+		ThreatSolver[] solvers = { this.a.newThreatSolver(), this.b.newThreatSolver() };
+		// 每一方视角的棋盘：自己的子是AI
+		Gobang[] boards = { Gobang.newGobang(this.size, this.size), Gobang.newGobang(this.size, this.size) };
+		int[] opening = opening(boards[0], game / 2);
+		Game record = new Game(this.size * this.size);
+		int turn = game % 2, lastMove = Gobang.NO_MOVE;
+		record.first = turn;
+		for (int ply = 0; ply < this.size * this.size; ply++) {
+			int move;
+			if (ply < opening.length) {
+				move = opening[ply];
+			} else {
+				long start = System.nanoTime();
+				move = think(configs[turn], searches[turn], solvers[turn], boards[turn], lastMove, record, turn);
+				long nanos = System.nanoTime() - start;
+				record.nanos[turn] += nanos;
+				record.maxNanos[turn] = Math.max(record.maxNanos[turn], nanos);
+				record.moves[turn]++;
+				if (move == Gobang.NO_MOVE)
+					break;
+			}
+			Observation<int[][]> observation = boards[turn].action(move, Gobang.POINT_AI);
+			boards[1 - turn].action(move, Gobang.POINT_PLAYER);
+			record.moveList[record.plies++] = move;
+			if (observation.isDone()) {
+				record.winner = turn;
+				return record;
+			}
+			turn = 1 - turn;
+			lastMove = move;
+		}
+		return record;
+	}
+
+	/**
+	 * 随机开局：第一步天元，之后在天元附近两格内随机下，同一个种子得到同样的开局
+	 */
+	private int[] opening(Gobang empty, long seed) {
+		Random random = new Random(seed);
+		int center = this.size / 2;
+		int[] opening = new int[Math.max(1, this.openingMoves)];
+		opening[0] = empty.move(center, center);
+		for (int i = 1; i < opening.length; i++) {
+			int move;
+			boolean used;
+			do {
+				move = empty.move(center + random.nextInt(5) - 2, center + random.nextInt(5) - 2);
+				used = false;
+				for (int j = 0; j < i; j++)
+					used |= opening[j] == move;
+			} while (used);
+			opening[i] = move;
+		}
+		return opening;
+	}
+
+	/**
+	 * 一方思考一步：先找强制的变化（没有威胁空间搜索时只看一步成五），没有再搜索，选择模拟次数最多的点。
+	 * 限时的时候威胁空间搜索的时间也算在这一步里
+	 */
+	private static int think(EngineConfig config, GobangUCT search, ThreatSolver solver, Gobang board, int lastMove,
+			Game record, int turn) throws IllegalPointException {
+		long start = System.nanoTime();
+		if (solver != null && config.getPlayouts() == 0)
+			solver.setDeadline(start + (long) (config.getMillis() * TimeManager.THREAT_SHARE) * 1000000);
+		int move = solver != null ? solver.solve(board, Gobang.POINT_AI) : board.speedPoint();
+		if (move != Gobang.NO_MOVE)
+			return move;
+		Node root = new Node(lastMove, board);
+		search.expansion(root);
+		if (!root.hasChild())
+			return Gobang.NO_MOVE;
+		if (config.getPlayouts() > 0) {
+			while (root.getN() < config.getPlayouts())
+				search.simulation(root);
+		} else {
+			long deadline = start + config.getMillis() * 1000000;
+			search.setDeadline(deadline);
+			while (System.nanoTime() - deadline < 0)
+				search.simulation(root);
+		}
+		record.playouts[turn] += root.getN();
+		return new SearchResult(root, 1).getBest();
+	}
+
+	public int getOpeningMoves() {
+		return openingMoves;
+	}
+
+	public void setOpeningMoves(int openingMoves) {
+		this.openingMoves = openingMoves;
+	}
+
+	public Path getRecord() {
+		return record;
+	}
+
+	public void setRecord(Path record) {
+		this.record = record;
+	}
+
+	/**
+	 * 一局的记录，下标0为A方，1为B方
+	 */
+	static class Game {
+		int winner = -1;	// 胜者，-1为和棋
+		int first;			// 先手
+		int plies;			// 总步数
+		final int[] moveList;	// 双方下的点，前plies个有效
+		final long[] playouts = new long[2];
+		final long[] nanos = new long[2];
+		final long[] moves = new long[2];
+		final long[] maxNanos = new long[2];
+
+		Game(int cells) {
+			this.moveList = new int[cells];
+		}
+	}
+
+	/**
+	 * 命令行：参数为 key=value，例如
+	 *
+	 * <pre>
+	 * java mcts.arena.Arena games=200 size=15 a.policy=ucb1 b.policy=puct b.c=2 a.playouts=3000 b.playouts=3000
+	 * </pre>
+	 *
+	 * 通用参数：games、size、threads（默认所有核心）、opening、record（对局记录文件）；每一方的参数（a.或者b.开头）：policy（ucb1、tuned、puct）、
+	 * c、expansion、widening、threats、bitboard、tt、playouts、millis
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (eq < 0)
+				throw new IllegalArgumentException("expected key=value: " + arg);
+			options.put(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+		EngineConfig a = config("A", "a.", options), b = config("B", "b.", options);
+		Arena arena = new Arena(a, b, Integer.parseInt(options.getOrDefault("games", "100")),
+				Integer.parseInt(options.getOrDefault("size", "15")), Integer.parseInt(
+						options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+		arena.setOpeningMoves(Integer.parseInt(options.getOrDefault("opening", "2")));
+		if (options.containsKey("record"))
+			arena.setRecord(Paths.get(options.get("record")));
+		System.out.print(arena.run().report());
+	}
+
+	private static EngineConfig config(String name, String prefix, Map<String, String> options) {
+		EngineConfig config = new EngineConfig(name);
+		String c = options.get(prefix + "c");
+		String policy = options.getOrDefault(prefix + "policy", "ucb1");
+		config.setTreePolicy(policy(policy, c == null ? Double.NaN : Double.parseDouble(c)));
+		if (options.containsKey(prefix + "expansion"))
+			config.setExpansionN(Integer.parseInt(options.get(prefix + "expansion")));
+		if (options.containsKey(prefix + "widening"))
+			config.setProgressiveWidening(Boolean.parseBoolean(options.get(prefix + "widening")));
+		if (options.containsKey(prefix + "threats"))
+			config.setThreats(Boolean.parseBoolean(options.get(prefix + "threats")));
+		if (options.containsKey(prefix + "bitboard"))
+			config.setBitboard(Boolean.parseBoolean(options.get(prefix + "bitboard")));
+		if (options.containsKey(prefix + "tt"))
+			config.setTranspositionSize(Integer.parseInt(options.get(prefix + "tt")));
+		if (options.containsKey(prefix + "millis")) {
+			config.setMillis(Long.parseLong(options.get(prefix + "millis")));
+			config.setPlayouts(0);
+		}
+		if (options.containsKey(prefix + "playouts"))
+			config.setPlayouts(Integer.parseInt(options.get(prefix + "playouts")));
+		return config;
+	}
+
+	/**
+	 * 按名字创建树策略，探索常数为NaN时使用默认值
+	 */
+	private static TreePolicy policy(String name, double c) {
+		switch (name) {
+		case "ucb1":
+			return Double.isNaN(c) ? new Ucb1Policy() : new Ucb1Policy(c);
+		case "tuned":
+			return Double.isNaN(c) ? new Ucb1TunedPolicy() : new Ucb1TunedPolicy(c);
+		case "puct":
+			return Double.isNaN(c) ? new PuctPolicy() : new PuctPolicy(c);
+		default:
+			throw new IllegalArgumentException("unknown policy: " + name);
+		}
+	}
+
+}
@@ -0,0 +1,152 @@
+package mcts.arena;
+
+/**
+ * 对弈场的统计：从A方看的胜、负、和，得分率的置信区间和等级分差，以及双方的速度
+ *
+ * @author Jervis
+ *
+ */
+public class ArenaResult {
+
+	/**
+	 * 95%置信区间的z值
+	 */
+	public static final double Z = 1.96;
+
+	private final EngineConfig a, b;
+	private int wins, losses, draws;	// 从A方看
+	private long plies;					// 所有对局的总步数
+	private final long[] playouts = new long[2];	// 双方的总模拟次数
+	private final long[] nanos = new long[2];		// 双方的总思考时间
+	private final long[] moves = new long[2];		// 双方思考的步数（包括快速走子）
+	private final long[] maxNanos = new long[2];	// 双方一步的最长思考时间
+
+	public ArenaResult(EngineConfig a, EngineConfig b) {
+		this.a = a;
+		this.b = b;
+	}
+
+	/**
+	 * 记录一局
+	 *
+	 * @param game
+	 *            一局的记录
+	 */
+	synchronized void add(Arena.Game game) {
+		if (game.winner == 0)
+			this.wins++;
+		else if (game.winner == 1)
+			this.losses++;
+		else
+			this.draws++;
+		this.plies += game.plies;
+		for (int i = 0; i < 2; i++) {
+			this.playouts[i] += game.playouts[i];
+			this.nanos[i] += game.nanos[i];
+			this.moves[i] += game.moves[i];
+			this.maxNanos[i] = Math.max(this.maxNanos[i], game.maxNanos[i]);
+		}
+	}
+
+	public synchronized int getGames() {
+		return this.wins + this.losses + this.draws;
+	}
+
+	public synchronized int getWins() {
+		return wins;
+	}
+
+	public synchronized int getLosses() {
+		return losses;
+	}
+
+	public synchronized int getDraws() {
+		return draws;
+	}
+
+	/**
+	 * @return A方的得分率，和棋算半局
+	 */
+	public synchronized double getScore() {
+		int games = getGames();
+		return games == 0 ? 0.5 : (this.wins + this.draws * 0.5) / games;
+	}
+
+	/**
+	 * 得分率的Wilson置信区间
+	 *
+	 * @return {下界, 上界}
+	 */
+	public synchronized double[] getScoreInterval() {
+		int n = getGames();
+		if (n == 0)
+			return new double[] { 0, 1 };
+		double p = getScore();
+		double z2 = Z * Z;
+		double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+		double half = Z * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n)) / (1 + z2 / n);
+		return new double[] { Math.max(0, center - half), Math.min(1, center + half) };
+	}
+
+	/**
+	 * @return A方相对B方的等级分差
+	 */
+	public double getElo() {
+		return elo(getScore());
+	}
+
+	/**
+	 * 得分率换算成等级分差
+	 *
+	 * @param score
+	 *            得分率
+	 * @return 等级分差，得分率为0或者1时是负无穷或者正无穷
+	 */
+	public static double elo(double score) {
+		if (score <= 0)
+			return Double.NEGATIVE_INFINITY;
+		if (score >= 1)
+			return Double.POSITIVE_INFINITY;
+		return -400 * Math.log10(1 / score - 1);
+	}
+
+	/**
+	 * @param side
+	 *            0为A方，1为B方
+	 * @return 每秒模拟次数
+	 */
+	public synchronized double getPlayoutsPerSecond(int side) {
+		return this.nanos[side] == 0 ? 0 : this.playouts[side] * 1e9 / this.nanos[side];
+	}
+
+	/**
+	 * @param side
+	 *            0为A方，1为B方
+	 * @return 平均每步思考时间，毫秒
+	 */
+	public synchronized double getAverageLatency(int side) {
+		return this.moves[side] == 0 ? 0 : this.nanos[side] / 1e6 / this.moves[side];
+	}
+
+	/**
+	 * 报告：对局数、胜负和、得分率和置信区间、等级分差和置信区间、双方的速度
+	 *
+	 * @return 报告文本
+	 */
+	public synchronized String report() {
+		int games = getGames();
+		double[] interval = getScoreInterval();
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("A = %s%nB = %s%n", this.a, this.b));
+		sb.append(String.format("games=%d A wins=%d losses=%d draws=%d average plies=%.1f%n", games, this.wins,
+				this.losses, this.draws, games == 0 ? 0.0 : (double) this.plies / games));
+		sb.append(String.format("score=%.3f [%.3f, %.3f] elo=%+.1f [%+.1f, %+.1f]%n", getScore(), interval[0],
+				interval[1], getElo(), elo(interval[0]), elo(interval[1])));
+		for (int i = 0; i < 2; i++) {
+			sb.append(String.format("%s: playouts/s=%.0f average latency=%.2fms max latency=%.2fms%n",
+					i == 0 ? "A" : "B", getPlayoutsPerSecond(i), getAverageLatency(i), this.maxNanos[i] / 1e6));
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,164 @@
+package mcts.arena;
+
+import mcts.abs.TreePolicy;
+import mcts.entity.GobangUCT;
+import mcts.entity.ThreatSolver;
+import mcts.entity.TranspositionTable;
+import mcts.entity.Ucb1Policy;
+
+/**
+ * 对弈场中一方引擎的配置
+ *
+ * 每步按模拟次数（{@link #setPlayouts(int)}）或者按时间（{@link #setMillis(long)}）搜索，
+ * 多局同时进行时按模拟次数比较公平，不受机器负载影响。
+ *
+ * @author Jervis
+ *
+ */
+public class EngineConfig {
+
+	/**
+	 * 名字，报告中使用
+	 */
+	private final String name;
+	/**
+	 * 树策略（没有状态，多局共用）
+	 */
+	private TreePolicy treePolicy = new Ucb1Policy();
+	/**
+	 * 多少次模拟后扩展节点
+	 */
+	private int expansionN = GobangUCT.EXPANSION_N;
+	/**
+	 * 是否渐进扩展
+	 */
+	private boolean progressiveWidening = true;
+	/**
+	 * 每局置换表的大小，0表示不使用
+	 */
+	private int transpositionSize;
+	/**
+	 * 搜索之前是否先用威胁空间搜索找强制的变化，否则只看一步成五
+	 */
+	private boolean threats = true;
+	/**
+	 * 模拟对局是否在位棋盘上进行
+	 */
+	private boolean bitboard;
+	/**
+	 * 每步模拟多少次，0表示按时间
+	 */
+	private int playouts = 2000;
+	/**
+	 * 每步搜索多少毫秒，模拟次数为0时使用
+	 */
+	private long millis = 100;
+
+	/**
+	 * @param name
+	 *            名字
+	 */
+	public EngineConfig(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * 按配置创建一局使用的搜索，节点不保存棋盘
+	 *
+	 * @return 搜索
+	 */
+	GobangUCT newSearch() {
+		GobangUCT gobangUCT = new GobangUCT(
+				this.transpositionSize > 0 ? new TranspositionTable(this.transpositionSize) : null, 0, true);
+		gobangUCT.setTreePolicy(this.treePolicy);
+		gobangUCT.setExpansionN(this.expansionN);
+		gobangUCT.setProgressiveWidening(this.progressiveWidening);
+		gobangUCT.setBitboardRollouts(this.bitboard);
+		return gobangUCT;
+	}
+
+	/**
+	 * 按配置创建一局使用的威胁空间搜索
+	 *
+	 * @return 威胁空间搜索，不使用时为null
+	 */
+	ThreatSolver newThreatSolver() {
+		return this.threats ? new ThreatSolver(1 << 14) : null;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public TreePolicy getTreePolicy() {
+		return treePolicy;
+	}
+
+	public void setTreePolicy(TreePolicy treePolicy) {
+		this.treePolicy = treePolicy;
+	}
+
+	public int getExpansionN() {
+		return expansionN;
+	}
+
+	public void setExpansionN(int expansionN) {
+		this.expansionN = expansionN;
+	}
+
+	public boolean isProgressiveWidening() {
+		return progressiveWidening;
+	}
+
+	public void setProgressiveWidening(boolean progressiveWidening) {
+		this.progressiveWidening = progressiveWidening;
+	}
+
+	public int getTranspositionSize() {
+		return transpositionSize;
+	}
+
+	public void setTranspositionSize(int transpositionSize) {
+		this.transpositionSize = transpositionSize;
+	}
+
+	public boolean isThreats() {
+		return threats;
+	}
+
+	public void setThreats(boolean threats) {
+		this.threats = threats;
+	}
+
+	public boolean isBitboard() {
+		return bitboard;
+	}
+
+	public void setBitboard(boolean bitboard) {
+		this.bitboard = bitboard;
+	}
+
+	public int getPlayouts() {
+		return playouts;
+	}
+
+	public void setPlayouts(int playouts) {
+		this.playouts = playouts;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+
+	public void setMillis(long millis) {
+		this.millis = millis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s(policy=%s expansion=%d widening=%b tt=%d threats=%b bitboard=%b %s)", this.name,
+				this.treePolicy.getClass().getSimpleName(), this.expansionN, this.progressiveWidening,
+				this.transpositionSize, this.threats, this.bitboard, this.playouts > 0 ? "playouts=" + this.playouts : "millis=" + this.millis);
+	}
+
+}
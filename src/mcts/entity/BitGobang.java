@@ -0,0 +1,555 @@
+package mcts.entity;
+
+import java.util.Arrays;
+
+import mcts.abs.Environment;
+import mcts.abs.RolloutBoard;
+import mcts.exception.IllegalPointException;
+
+/**
+ * @author Jervis
+ *
+ *         位棋盘实现的五子棋环境
+ *
+ *         每个玩家一个位集合，每行多留一个空位（哨兵位，永远为0），所以横、竖、两条斜线分别对应移位
+ *         1、col+1、col+2、col，移位时不会串行。判断五连只需要几次移位与（&）操作，复制棋盘只需要克隆两个long数组。
+ *         可下点由所有子向八个方向各移一位再取并集得到。形势判断与 {@link PatternEvaluator} 相同：按线查表计分，
+ *         第一次需要时计算所有线，之后每次下子、撤销只更新经过该点的四条线。
+ *         行为与 {@link Gobang} 保持一致，可以代替它进行模拟对局，见 {@link GobangUCT#setBitboardRollouts(boolean)}。
+ */
+public class BitGobang implements Environment<long[][]>, RolloutBoard {
+
+	/**
+	 * 棋盘行数
+	 */
+	private int row;
+	/**
+	 * 棋盘列数
+	 */
+	private int col;
+	/**
+	 * 每行占用的位数（列数 + 1个哨兵位）
+	 */
+	private int stride;
+	/**
+	 * 四个方向的移位：横、竖、主对角线、副对角线
+	 */
+	private int[] shifts;
+	/**
+	 * 所有合法格子的掩码（去掉哨兵位以及多余的位）
+	 */
+	private long[] valid;
+
+	/**
+	 * AI的位棋盘
+	 */
+	private long[] ai;
+	/**
+	 * 玩家的位棋盘
+	 */
+	private long[] player;
+	/**
+	 * 已下子的位集合，计算可下点时使用的缓冲区
+	 */
+	private long[] occupied;
+	/**
+	 * 可下点的位集合，由 {@link #candidateCount()} 计算
+	 */
+	private long[] near;
+	/**
+	 * 每个方向每条线的得分，[方向][线编号]，为null表示还没有做过形势判断
+	 */
+	private int[][] lineScores;
+	/**
+	 * 形势判断的总分（整数，常量 × {@link PatternEvaluator#SCALE}）
+	 */
+	private int total;
+	/**
+	 * 取出一条线时使用的缓冲区，两端各留 {@link PatternTable#HALF} 个线外的点
+	 */
+	private int[] line;
+
+	public BitGobang(int row, int col) {
+		this.row = row;
+		this.col = col;
+		this.stride = col + 1;
+		this.shifts = new int[] { 1, this.stride, this.stride + 1, this.stride - 1 };
+		int words = (row * this.stride + 63) >>> 6;
+		this.valid = new long[words];
+		for (int i = 0; i < row; i++) {
+			for (int j = 0; j < col; j++) {
+				int bit = i * this.stride + j;
+				this.valid[bit >>> 6] |= 1L << bit;
+			}
+		}
+		this.ai = new long[words];
+		this.player = new long[words];
+		this.occupied = new long[words];
+		this.near = new long[words];
+		this.line = new int[Math.max(row, col) + 2 * PatternTable.HALF];
+	}
+
+	private BitGobang(BitGobang other) {
+		this.row = other.row;
+		this.col = other.col;
+		this.stride = other.stride;
+		this.shifts = other.shifts;
+		this.valid = other.valid;
+		this.ai = other.ai.clone();
+		this.player = other.player.clone();
+		this.occupied = new long[other.valid.length];
+		this.near = new long[other.valid.length];
+		this.line = new int[other.line.length];
+		if (other.lineScores != null) {
+			this.lineScores = new int[4][];
+			for (int d = 0; d < 4; d++)
+				this.lineScores[d] = other.lineScores[d].clone();
+			this.total = other.total;
+		}
+	}
+
+	/**
+	 * 在环境中判断，参数点 是否合法
+	 *
+	 * @param move
+	 *            点的编码（x * 列数 + y）
+	 * @return
+	 */
+	@Override
+	public boolean isIllegal(int move) {
+		if (move < 0 || move >= this.row * this.col) return false;
+		return isIllegal(move / this.col, move % this.col);
+	}
+
+	/**
+	 * 在环境中判断，参数点 是否合法
+	 *
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
+	 * @return
+	 */
+	@Override
+	public boolean isIllegal(int x, int y) {
+		int bit = bit(x, y);
+		return ((this.ai[bit >>> 6] | this.player[bit >>> 6]) & (1L << bit)) == 0;
+	}
+
+	/**
+	 * 重置整个环境
+	 */
+	@Override
+	public long[][] reset() {
+		this.ai = new long[this.valid.length];
+		this.player = new long[this.valid.length];
+		this.lineScores = null;
+		return new long[][] { this.ai, this.player };
+	}
+
+	/**
+	 * 打印环境在控制台
+	 */
+	@Override
+	public void render() {
+		System.out.println(this.toString());
+	}
+
+	/**
+	 * 行动方法
+	 *
+	 * @param move
+	 *            点的编码（x * 列数 + y）
+	 * @param who
+	 *            玩家 or AI
+	 * @return 返回对象包括是否结束，环境评分等信息
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	@Override
+	public Observation<long[][]> action(int move, int who) throws IllegalPointException {
+		if (move < 0 || move >= this.row * this.col)
+			throw new IllegalPointException(String.format("illegal move %s at board %s", move, this));
+		return this.action(move / this.col, move % this.col, who);
+	}
+
+	/**
+	 * 行动方法
+	 *
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
+	 * @param who
+	 *            玩家 or AI
+	 * @return 返回对象包括是否结束，环境评分等信息
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	@Override
+	public Observation<long[][]> action(int x, int y, int who) throws IllegalPointException {
+		// 不合法点判断，抛出异常
+		if (x < 0 || x >= this.row || y < 0 || y >= this.col || !isIllegal(x, y))
+			throw new IllegalPointException(String.format("illegal point [%s, %s] at board %s", x, y, this));
+		// 不非法点值判断，抛出异常
+		if (who != Gobang.POINT_AI && who != Gobang.POINT_PLAYER)
+			throw new IllegalPointException(String.format("illegal point value %s", who));
+		// 修改位棋盘，并判断当前下法是否结束
+		boolean done = make(x, y, who);
+		long[][] copy = new long[][] { this.ai.clone(), this.player.clone() };
+		// 拼装返回对象
+		if (done)
+			return new Observation<long[][]>(who == Gobang.POINT_AI ? Gobang.AI_FIVE : Gobang.PLAYER_FIVE, copy, done,
+					"winner", who == Gobang.POINT_AI ? Gobang.WINNER_AI : Gobang.WINNER_PLAYER);
+		return new Observation<long[][]>(copy);
+	}
+
+	/**
+	 * 深度复制整个环境，只需要克隆两个long数组（做过形势判断时再加上每条线的得分）
+	 *
+	 * @return 本环境的复制
+	 */
+	@Override
+	public Environment<long[][]> copy() {
+		return new BitGobang(this);
+	}
+
+	/**
+	 * 下子，不做合法性检查、不创建任何对象，模拟对局使用
+	 *
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
+	 * @param who
+	 *            玩家 or AI
+	 * @return 当前下法是否结束游戏
+	 */
+	@Override
+	public boolean make(int x, int y, int who) {
+		int bit = bit(x, y);
+		long[] board = who == Gobang.POINT_AI ? this.ai : this.player;
+		board[bit >>> 6] |= 1L << bit;
+		if (this.lineScores != null)
+			updateLines(x, y);
+		return isDone(bit, board);
+	}
+
+	/**
+	 * 撤销下子，与 {@link #make(int, int, int)} 对应
+	 *
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
+	 */
+	@Override
+	public void unmake(int x, int y) {
+		int bit = bit(x, y);
+		this.ai[bit >>> 6] &= ~(1L << bit);
+		this.player[bit >>> 6] &= ~(1L << bit);
+		if (this.lineScores != null)
+			updateLines(x, y);
+	}
+
+	/**
+	 * 判断刚下在bit位置的子是否连成五子
+	 *
+	 * 对每个方向d，five = b & b>>d & b>>2d & b>>3d & b>>4d，five的第j位为1代表从j开始有五连，
+	 * 只需要检查经过当前子的那几个起点
+	 *
+	 * @param bit
+	 *            刚下的位
+	 * @param b
+	 *            下子一方的位棋盘
+	 * @return
+	 */
+	private boolean isDone(int bit, long[] b) {
+		for (int d : this.shifts) {
+			int word = -1;
+			long five = 0;
+			for (int k = 0; k < 5; k++) {
+				int start = bit - k * d;
+				if (start < 0)
+					break;
+				if (start >>> 6 != word) {
+					word = start >>> 6;
+					five = b[word] & shiftRight(b, word, d) & shiftRight(b, word, 2 * d) & shiftRight(b, word, 3 * d)
+							& shiftRight(b, word, 4 * d);
+				}
+				if ((five & (1L << start)) != 0)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 多字位集合右移（第i位得到第i+s位的值）之后的第word个字
+	 */
+	private static long shiftRight(long[] b, int word, int s) {
+		int q = word + (s >>> 6), r = s & 63;
+		long value = q < b.length ? b[q] >>> r : 0;
+		if (r != 0 && q + 1 < b.length)
+			value |= b[q + 1] << (64 - r);
+		return value;
+	}
+
+	/**
+	 * 多字位集合左移（第i位得到第i-s位的值）之后的第word个字
+	 */
+	private static long shiftLeft(long[] b, int word, int s) {
+		int q = word - (s >>> 6), r = s & 63;
+		long value = q >= 0 ? b[q] << r : 0;
+		if (r != 0 && q - 1 >= 0)
+			value |= b[q - 1] >>> (64 - r);
+		return value;
+	}
+
+	/**
+	 * 可下点数量（空点并且周围一格以内有子）：所有子向八个方向各移一位再取并集，去掉已下的点。
+	 * 结果保存下来，供之后的 {@link #candidateAt(int)} 使用
+	 *
+	 * @return 可下点数量
+	 */
+	@Override
+	public int candidateCount() {
+		for (int w = 0; w < this.valid.length; w++)
+			this.occupied[w] = this.ai[w] | this.player[w];
+		int count = 0;
+		for (int w = 0; w < this.valid.length; w++) {
+			long near = 0;
+			for (int d : this.shifts)
+				near |= shiftRight(this.occupied, w, d) | shiftLeft(this.occupied, w, d);
+			near &= ~this.occupied[w] & this.valid[w];
+			this.near[w] = near;
+			count += Long.bitCount(near);
+		}
+		return count;
+	}
+
+	/**
+	 * 第index个可下点（按行优先顺序），需要先调用 {@link #candidateCount()}
+	 *
+	 * @param index
+	 *            下标
+	 * @return x * col + y
+	 */
+	@Override
+	public int candidateAt(int index) {
+		for (int w = 0;; w++) {
+			long near = this.near[w];
+			int count = Long.bitCount(near);
+			if (index < count) {
+				for (; index > 0; index--)
+					near &= near - 1;
+				int bit = (w << 6) + Long.numberOfTrailingZeros(near);
+				return bit / this.stride * this.col + bit % this.stride;
+			}
+			index -= count;
+		}
+	}
+
+	/**
+	 * 获得当前情况下，每个已下子周围一格的点
+	 *
+	 * @return 前情况下，每个已下子周围一格的所有点的编码（x * 列数 + y），按行优先顺序
+	 */
+	public int[] illegalPoints() {
+		int[] points = new int[candidateCount()];
+		int size = 0;
+		for (int w = 0; w < this.near.length; w++) {
+			for (long near = this.near[w]; near != 0; near &= near - 1) {
+				int bit = (w << 6) + Long.numberOfTrailingZeros(near);
+				points[size++] = bit / this.stride * this.col + bit % this.stride;
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * 形势判断，规则与常量与 {@link Gobang#formalJudgment()} 相同
+	 *
+	 * @return 判断当前局势得分
+	 */
+	public Observation<long[][]> formalJudgment() {
+		double value = judgmentValue();
+		return new Observation<long[][]>(value, new long[][] { this.ai, this.player },
+				value == Gobang.NORMAL_WINNER_REWARD ? false : true, null);
+	}
+
+	/**
+	 * 形势判断的得分，不创建任何对象，模拟对局使用
+	 *
+	 * 第一次调用时计算所有线的得分，之后每次下子、撤销只更新经过该点的四条线
+	 *
+	 * @return 判断当前局势得分，不为0则表示形势判断有结果
+	 */
+	@Override
+	public double judgmentValue() {
+		if (this.lineScores == null)
+			rebuildLines();
+		return (double) this.total / PatternEvaluator.SCALE;
+	}
+
+	/**
+	 * 重新计算所有线的得分，线的编号与 {@link PatternEvaluator} 相同
+	 */
+	private void rebuildLines() {
+		int diagonals = this.row + this.col - 1;
+		this.lineScores = new int[][] { new int[this.row], new int[this.col], new int[diagonals], new int[diagonals] };
+		this.total = 0;
+		for (int x = 0; x < this.row; x++)
+			this.total += this.lineScores[0][x] = scoreLine(0, x, 0);
+		for (int y = 0; y < this.col; y++)
+			this.total += this.lineScores[1][y] = scoreLine(1, 0, y);
+		for (int x = 0; x < this.row; x++) {
+			this.total += this.lineScores[2][x + this.col - 1] = scoreLine(2, x, 0);
+			this.total += this.lineScores[3][x + this.col - 1] = scoreLine(3, x, this.col - 1);
+		}
+		for (int y = 1; y < this.col; y++) {
+			this.total += this.lineScores[2][this.col - 1 - y] = scoreLine(2, 0, y);
+			this.total += this.lineScores[3][y - 1] = scoreLine(3, 0, y - 1);
+		}
+	}
+
+	/**
+	 * 点(x, y)发生变化（下子或者撤销）之后，重新计算经过它的四条线
+	 */
+	private void updateLines(int x, int y) {
+		updateLine(0, x, x, 0);
+		updateLine(1, y, 0, y);
+		int d = Math.min(x, y);
+		updateLine(2, x - y + this.col - 1, x - d, y - d);
+		d = Math.min(x, this.col - 1 - y);
+		updateLine(3, x + y, x - d, y + d);
+	}
+
+	private void updateLine(int direction, int index, int startX, int startY) {
+		int score = scoreLine(direction, startX, startY);
+		this.total += score - this.lineScores[direction][index];
+		this.lineScores[direction][index] = score;
+	}
+
+	/**
+	 * 从位棋盘取出一条线，用 {@link PatternEvaluator#scoreLine(int[], int)} 查表计分。
+	 * 沿线前进一格，位的下标前进这个方向的移位
+	 *
+	 * @param direction
+	 *            0横 1竖 2主对角线 3副对角线
+	 * @param x
+	 *            线的起点x
+	 * @param y
+	 *            线的起点y
+	 */
+	private int scoreLine(int direction, int x, int y) {
+		int dx = direction == 0 ? 0 : 1, dy = direction == 1 ? 0 : direction == 3 ? -1 : 1;
+		int step = this.shifts[direction];
+		int length = PatternTable.HALF;
+		for (int i = 0; i < PatternTable.HALF; i++)
+			this.line[i] = PatternEvaluator.OUTSIDE;
+		for (int i = x, j = y, bit = bit(x, y); i >= 0 && i < this.row && j >= 0
+				&& j < this.col; i += dx, j += dy, bit += step)
+			this.line[length++] = (int) (this.ai[bit >>> 6] >>> bit & 1) | (int) (this.player[bit >>> 6] >>> bit & 1) << 1;
+		for (int i = 0; i < PatternTable.HALF; i++)
+			this.line[length++] = PatternEvaluator.OUTSIDE;
+		return PatternEvaluator.scoreLine(this.line, length - 2 * PatternTable.HALF);
+	}
+
+	/**
+	 * 快速走子：任意一方下一步可以连成五子，直接返回这个点
+	 *
+	 * @return 可以连成五子的点的编码，没有则返回 {@link Gobang#NO_MOVE}
+	 */
+	public int speedPoint() {
+		int[] illegalPoints = this.illegalPoints();
+		for (int i = 0; i < illegalPoints.length; i++) {
+			int move = illegalPoints[i];
+			int bit = bit(move / this.col, move % this.col);
+			if (makesFive(bit, this.ai) || makesFive(bit, this.player))
+				return move;
+		}
+		return Gobang.NO_MOVE;
+	}
+
+	/**
+	 * 临时在bit位置落子，判断是否五连，然后撤销
+	 */
+	private boolean makesFive(int bit, long[] b) {
+		long mask = 1L << bit;
+		b[bit >>> 6] |= mask;
+		boolean done = isDone(bit, b);
+		b[bit >>> 6] &= ~mask;
+		return done;
+	}
+
+	private int bit(int x, int y) {
+		return x * this.stride + y;
+	}
+
+	/**
+	 * 把另一个棋盘的局面装入本棋盘，两个棋盘大小必须相同
+	 *
+	 * @param gobang
+	 *            二维数组棋盘
+	 */
+	public void load(Gobang gobang) {
+		setBroad(gobang.getBroad());
+	}
+
+	@Override
+	public int getRow() {
+		return row;
+	}
+
+	@Override
+	public int getCol() {
+		return col;
+	}
+
+	/**
+	 * 转换成二维数组棋盘，方便与UI以及 {@link Gobang} 交互
+	 *
+	 * @return 二维数组棋盘
+	 */
+	public int[][] getBroad() {
+		int[][] broad = new int[this.row][this.col];
+		for (int i = 0; i < this.row; i++) {
+			for (int j = 0; j < this.col; j++) {
+				int bit = bit(i, j);
+				if ((this.ai[bit >>> 6] & (1L << bit)) != 0)
+					broad[i][j] = Gobang.POINT_AI;
+				else if ((this.player[bit >>> 6] & (1L << bit)) != 0)
+					broad[i][j] = Gobang.POINT_PLAYER;
+			}
+		}
+		return broad;
+	}
+
+	public void setBroad(int[][] broad) {
+		Arrays.fill(this.ai, 0);
+		Arrays.fill(this.player, 0);
+		for (int i = 0; i < this.row; i++) {
+			for (int j = 0; j < this.col; j++) {
+				int bit = bit(i, j);
+				if (broad[i][j] == Gobang.POINT_AI)
+					this.ai[bit >>> 6] |= 1L << bit;
+				else if (broad[i][j] == Gobang.POINT_PLAYER)
+					this.player[bit >>> 6] |= 1L << bit;
+			}
+		}
+		if (this.lineScores != null)
+			rebuildLines();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString() 与Gobang打印方式一致
+	 */
+	@Override
+	public String toString() {
+		return new Gobang(getBroad(), this.row, this.col).toString();
+	}
+
+}
@@ -1,11 +1,9 @@
 package mcts.entity;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.Arrays;
 
 import mcts.abs.Environment;
+import mcts.abs.RolloutBoard;
 import mcts.exception.IllegalPointException;
 
 /**
@@ -13,7 +11,7 @@ import mcts.exception.IllegalPointException;
  *
  *         五子棋环境
  */
-public class Gobang implements Environment<int[][]> {
+public class Gobang implements Environment<int[][]>, RolloutBoard {
 
 	/**
 	 * 初始化点值，即没有子的点值
@@ -28,6 +26,11 @@ public class Gobang implements Environment<int[][]> {
 	 */
 	public final static int POINT_PLAYER = 2;
 
+	/**
+	 * 没有点（点的编码为 x * 列数 + y，都不小于0）
+	 */
+	public final static int NO_MOVE = -1;
+
 	/**
 	 * 获胜者AI
 	 */
@@ -49,43 +52,43 @@ public class Gobang implements Environment<int[][]> {
 	/**
 	 * AI有3个子连一起，并且没有一边被挡住获得返回值
 	 */
-	private static final double AI_THREE = 0.2;
+	static final double AI_THREE = 0.2;
 	/**
 	 * AI有4个子连一起，有一边被挡住获得返回值
 	 */
-	private static final double AI_FOUR_BETWEEN = 0.2;
+	static final double AI_FOUR_BETWEEN = 0.2;
 	/**
 	 * AI有4个字连一起，并且没有一边被挡住获得返回值
 	 */
-	private static final double AI_FOUR_NO_BETWEEN = 0.8;
+	static final double AI_FOUR_NO_BETWEEN = 0.8;
 	/**
 	 * AI有5个字连一起获得返回值
 	 */
-	private static final double AI_FIVE = 1;
+	static final double AI_FIVE = 1;
 	/**
 	 * 当前棋局，玩家下一步之后，有3个子连一起，并且没有一边被挡住获得返回值
 	 */
-	private static final double PLAYER_NEXT_THREE = -0.25;
+	static final double PLAYER_NEXT_THREE = -0.25;
 	/**
 	 * 玩家3个子连一起，并且没有一边被挡住获得返回值
 	 */
-	private static final double PLAYER_THREE = -0.8;
+	static final double PLAYER_THREE = -0.8;
 	/**
 	 * 当前棋局，玩家下一步之后，有4个子连一起，有一边被挡住获得返回值
 	 */
-	private static final double PLAYER_NEXT_FOUR_BETWEEN = -0.25;
+	static final double PLAYER_NEXT_FOUR_BETWEEN = -0.25;
 	/**
 	 * 玩家4个子连一起，有一边被挡住获得返回值
 	 */
-	private static final double PLAYER_FOUR_BETWEEN = -0.8;
+	static final double PLAYER_FOUR_BETWEEN = -0.8;
 	/**
 	 * 玩家4个子连一起，并且没有一边被挡住获得返回值
 	 */
-	private static final double PLAYER_FOUR_NO_BETWEEN = -0.8;
+	static final double PLAYER_FOUR_NO_BETWEEN = -0.8;
 	/**
 	 * 玩家有5个字连一起获得返回值
 	 */
-	private static final double PLAYER_FIVE = -0.8;
+	static final double PLAYER_FIVE = -0.8;
 
 	/**
 	 * 棋盘行数
@@ -105,16 +108,55 @@ public class Gobang implements Environment<int[][]> {
 	 */
 	private int[][] broad;
 
+	/**
+	 * 棋盘的对称变换
+	 */
+	private final Symmetry symmetry;
+	/**
+	 * 当前棋盘在每个对称变换下的Zobrist哈希，每次下子增量更新，第0个（不变）就是当前棋盘的哈希
+	 */
+	private long[] hashes;
+
+	/**
+	 * 可下点的范围：距离已下子多少格以内（横、竖、斜都算一格）
+	 */
+	private int radius = 1;
+	/**
+	 * 每个点周围radius格以内有多少个子（不包括自己），下标 x * col + y
+	 */
+	private int[] near;
+	/**
+	 * 可下点集合（空点并且周围有子），紧凑数组
+	 */
+	private int[] candidateList;
+	/**
+	 * 每个点在可下点集合中的下标，不在集合中为-1
+	 */
+	private int[] candidateIndex;
+	/**
+	 * 可下点数量
+	 */
+	private int candidateSize;
+
+	/**
+	 * 增量形势判断，第一次形势判断时创建，不随棋盘复制
+	 */
+	private PatternEvaluator evaluator;
+
 	private Gobang(int row, int col) {
-		this.row = row;
-		this.col = col;
-		this.broad = new int[row][col];
+		this(new int[row][col], row, col);
 	}
 
-	private Gobang(int[][] board, int row, int col) {
+	Gobang(int[][] board, int row, int col) {
+		this(board, row, col, Symmetry.of(row, col).hashes(board));
+	}
+
+	private Gobang(int[][] board, int row, int col, long[] hashes) {
 		this.row = row;
 		this.col = col;
 		this.broad = board;
+		this.symmetry = Symmetry.of(row, col);
+		this.hashes = hashes;
 	}
 
 	/**
@@ -133,17 +175,30 @@ public class Gobang implements Environment<int[][]> {
 		return gobang;
 	}
 
+	/**
+	 * 创建一个新的空棋盘（不是单例），同时进行多局时（例如对弈场）每局一个
+	 * 
+	 * @param row
+	 *            行数
+	 * @param col
+	 *            列数
+	 * @return 新的空棋盘
+	 */
+	public static Gobang newGobang(int row, int col) {
+		return new Gobang(new int[row][col], row, col);
+	}
+
 	/**
 	 * 在环境中判断，参数点 是否合法
 	 * 
-	 * @param point
-	 *            点对象
+	 * @param move
+	 *            点的编码（x * 列数 + y）
 	 * @return
 	 */
 	@Override
-	public boolean isIllegal(Point point) {
-		if (point == null) return false;
-		return isIllegal(point.getX(), point.getY());
+	public boolean isIllegal(int move) {
+		if (move < 0 || move >= this.row * this.col) return false;
+		return isIllegal(move / this.col, move % this.col);
 	}
 
 	/**
@@ -166,6 +221,9 @@ public class Gobang implements Environment<int[][]> {
 	@Override
 	public int[][] reset() {
 		this.broad = new int[this.row][this.col];
+		this.hashes = new long[this.symmetry.getCount()];
+		this.near = null;
+		this.evaluator = null;
 		return this.broad;
 	}
 
@@ -180,8 +238,8 @@ public class Gobang implements Environment<int[][]> {
 	/**
 	 * 行动方法
 	 * 
-	 * @param point
-	 *            点对象
+	 * @param move
+	 *            点的编码（x * 列数 + y）
 	 * @param who
 	 *            玩家 or AI
 	 * @return 返回对象包括是否结束，环境评分等信息
@@ -189,24 +247,10 @@ public class Gobang implements Environment<int[][]> {
 	 *             当前点不合法则会抛出此异常
 	 */
 	@Override
-	public Observation<int[][]> action(Point point, int who) throws IllegalPointException {
-		// 不合法点判断，抛出异常
-		if (!isIllegal(point))
-			throw new IllegalPointException(String.format("illegal point %s at board %s", point, this));
-		// 不非法点值判断，抛出异常
-		if (who != Gobang.POINT_AI && who != Gobang.POINT_PLAYER)
-			throw new IllegalPointException(String.format("illegal point value %s", who));
-		// 修改二维数组中的点值
-		this.broad[point.getX()][point.getY()] = who;
-		// 判断当前下法是否结束
-		boolean done = isDone(point);
-		// 拼装返回对象
-		if (done)
-			return new Observation<int[][]>(
-					(done ? who == Gobang.POINT_AI ? Gobang.AI_FIVE : Gobang.PLAYER_FIVE : Gobang.NORMAL_WINNER_REWARD),
-					((Gobang) this.copy()).broad, done, "winner",
-					who == Gobang.POINT_AI ? Gobang.WINNER_AI : Gobang.WINNER_PLAYER);
-		return new Observation<int[][]>(((Gobang) this.copy()).broad);
+	public Observation<int[][]> action(int move, int who) throws IllegalPointException {
+		if (move < 0 || move >= this.row * this.col)
+			throw new IllegalPointException(String.format("illegal move %s at board %s", move, this));
+		return this.action(move / this.col, move % this.col, who);
 	}
 
 	/**
@@ -224,7 +268,21 @@ public class Gobang implements Environment<int[][]> {
 	 */
 	@Override
 	public Observation<int[][]> action(int x, int y, int who) throws IllegalPointException {
-		return this.action(Point.newInstance(x, y), who);
+		// 不合法点判断，抛出异常
+		if (x < 0 || x >= this.row || y < 0 || y >= this.col || !isIllegal(x, y))
+			throw new IllegalPointException(String.format("illegal point [%s, %s] at board %s", x, y, this));
+		// 不非法点值判断，抛出异常
+		if (who != Gobang.POINT_AI && who != Gobang.POINT_PLAYER)
+			throw new IllegalPointException(String.format("illegal point value %s", who));
+		// 修改二维数组中的点值，并判断当前下法是否结束
+		boolean done = make(x, y, who);
+		// 拼装返回对象
+		if (done)
+			return new Observation<int[][]>(
+					(done ? who == Gobang.POINT_AI ? Gobang.AI_FIVE : Gobang.PLAYER_FIVE : Gobang.NORMAL_WINNER_REWARD),
+					((Gobang) this.copy()).broad, done, "winner",
+					who == Gobang.POINT_AI ? Gobang.WINNER_AI : Gobang.WINNER_PLAYER);
+		return new Observation<int[][]>(((Gobang) this.copy()).broad);
 	}
 
 	/**
@@ -238,42 +296,196 @@ public class Gobang implements Environment<int[][]> {
 		for (int i = 0; i < this.broad.length; i++) {
 			System.arraycopy(this.broad[i], 0, copy[i], 0, this.broad[i].length);
 		}
-		return new Gobang(copy, this.row, this.col);
+		Gobang gobang = new Gobang(copy, this.row, this.col, this.hashes.clone());
+		gobang.radius = this.radius;
+		// 可下点集合在复制出来的棋盘第一次需要时再计算，扩展出的大部分节点用不到
+		return gobang;
+	}
+
+	/**
+	 * 下子，不做合法性检查、不创建任何对象，模拟对局使用
+	 * 
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
+	 * @param who
+	 *            玩家 or AI
+	 * @return 当前下法是否结束游戏
+	 */
+	public boolean make(int x, int y, int who) {
+		this.broad[x][y] = who;
+		updateHashes(who, x, y);
+		if (this.near != null) {
+			int cell = x * this.col + y;
+			removeCandidate(cell);
+			for (int i = Math.max(0, x - this.radius); i <= Math.min(this.row - 1, x + this.radius); i++) {
+				for (int j = Math.max(0, y - this.radius); j <= Math.min(this.col - 1, y + this.radius); j++) {
+					int neighbor = i * this.col + j;
+					if (neighbor != cell && this.near[neighbor]++ == 0 && this.broad[i][j] == Gobang.POINT_INITAL) {
+						addCandidate(neighbor);
+					}
+				}
+			}
+		}
+		if (this.evaluator != null) {
+			this.evaluator.update(this.broad, x, y);
+		}
+		return isDone(x, y);
+	}
+
+	/**
+	 * 撤销下子，与 {@link #make(int, int, int)} 对应
+	 * 
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
+	 */
+	public void unmake(int x, int y) {
+		updateHashes(this.broad[x][y], x, y);
+		this.broad[x][y] = Gobang.POINT_INITAL;
+		if (this.near != null) {
+			int cell = x * this.col + y;
+			for (int i = Math.max(0, x - this.radius); i <= Math.min(this.row - 1, x + this.radius); i++) {
+				for (int j = Math.max(0, y - this.radius); j <= Math.min(this.col - 1, y + this.radius); j++) {
+					int neighbor = i * this.col + j;
+					if (neighbor != cell && --this.near[neighbor] == 0) {
+						removeCandidate(neighbor);
+					}
+				}
+			}
+			if (this.near[cell] > 0) {
+				addCandidate(cell);
+			}
+		}
+		if (this.evaluator != null) {
+			this.evaluator.update(this.broad, x, y);
+		}
+	}
+
+	private void addCandidate(int cell) {
+		this.candidateIndex[cell] = this.candidateSize;
+		this.candidateList[this.candidateSize++] = cell;
+	}
+
+	private void removeCandidate(int cell) {
+		int index = this.candidateIndex[cell];
+		if (index < 0)
+			return;
+		// 用最后一个点填补空位
+		int last = this.candidateList[--this.candidateSize];
+		this.candidateList[index] = last;
+		this.candidateIndex[last] = index;
+		this.candidateIndex[cell] = -1;
+	}
+
+	/**
+	 * 根据当前棋盘重新计算可下点集合，只在第一次需要或者棋盘被整体替换时调用
+	 */
+	private void buildCandidates() {
+		int size = this.row * this.col;
+		if (this.near == null) {
+			this.near = new int[size];
+			this.candidateList = new int[size];
+			this.candidateIndex = new int[size];
+		} else {
+			Arrays.fill(this.near, 0);
+		}
+		Arrays.fill(this.candidateIndex, -1);
+		this.candidateSize = 0;
+		for (int x = 0; x < this.row; x++) {
+			for (int y = 0; y < this.col; y++) {
+				if (this.broad[x][y] == Gobang.POINT_INITAL)
+					continue;
+				for (int i = Math.max(0, x - this.radius); i <= Math.min(this.row - 1, x + this.radius); i++) {
+					for (int j = Math.max(0, y - this.radius); j <= Math.min(this.col - 1, y + this.radius); j++) {
+						if (i != x || j != y)
+							this.near[i * this.col + j]++;
+					}
+				}
+			}
+		}
+		for (int cell = 0; cell < size; cell++) {
+			if (this.near[cell] > 0 && this.broad[cell / this.col][cell % this.col] == Gobang.POINT_INITAL)
+				addCandidate(cell);
+		}
+	}
+
+	/**
+	 * 设置可下点的范围，会重新计算可下点集合
+	 * 
+	 * @param radius
+	 *            距离已下子多少格以内，默认1
+	 */
+	public void setRadius(int radius) {
+		if (radius < 1)
+			throw new IllegalArgumentException("radius must be positive: " + radius);
+		this.radius = radius;
+		this.near = null;
+	}
+
+	public int getRadius() {
+		return radius;
+	}
+
+	/**
+	 * 把另一个相同大小棋盘的状态复制到本棋盘，复用本棋盘的数组
+	 * 
+	 * 只读取另一个棋盘的二维数组，不读取它的可下点集合等缓存（搜索树上的棋盘会被多个线程同时读取，缓存只由棋盘自己的线程创建）
+	 * 
+	 * @param other
+	 *            另一个棋盘
+	 */
+	public void load(Gobang other) {
+		for (int i = 0; i < this.broad.length; i++) {
+			System.arraycopy(other.broad[i], 0, this.broad[i], 0, this.broad[i].length);
+		}
+		System.arraycopy(other.hashes, 0, this.hashes, 0, this.hashes.length);
+		this.radius = other.radius;
+		if (this.near != null) {
+			buildCandidates();
+		}
+		if (this.evaluator != null) {
+			this.evaluator.rebuild(this.broad);
+		}
 	}
 
 	/**
 	 * 判断当前下法是否会结束游戏
 	 * 
-	 * @param point
-	 *            下法
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
 	 * @return
 	 */
-	private boolean isDone(Point point) {
-		int x = point.getX(), y = point.getY(), count = 0;
+	private boolean isDone(int x, int y) {
+		int count = 0;
 		for (int i = y - 1; i >= 0 && this.broad[x][y] == this.broad[x][i]; i--)
 			count++;
-		for (int i = y + 1; i < this.row && this.broad[x][y] == this.broad[x][i]; i++)
+		for (int i = y + 1; i < this.col && this.broad[x][y] == this.broad[x][i]; i++)
 			count++;
 		if (count >= 4)
 			return true;
 		count = 0;
 		for (int i = x - 1; i >= 0 && this.broad[x][y] == this.broad[i][y]; i--)
 			count++;
-		for (int i = x + 1; i < this.col && this.broad[x][y] == this.broad[i][y]; i++)
+		for (int i = x + 1; i < this.row && this.broad[x][y] == this.broad[i][y]; i++)
 			count++;
 		if (count >= 4)
 			return true;
 		count = 0;
 		for (int i = x - 1, j = y - 1; i >= 0 && j >= 0 && this.broad[x][y] == this.broad[i][j]; i--, j--)
 			count++;
-		for (int i = x + 1, j = y + 1; i < this.col && j < this.row && this.broad[x][y] == this.broad[i][j]; i++, j++)
+		for (int i = x + 1, j = y + 1; i < this.row && j < this.col && this.broad[x][y] == this.broad[i][j]; i++, j++)
 			count++;
 		if (count >= 4)
 			return true;
 		count = 0;
-		for (int i = x - 1, j = y + 1; i >= 0 && j < this.row && this.broad[x][y] == this.broad[i][j]; i--, j++)
+		for (int i = x - 1, j = y + 1; i >= 0 && j < this.col && this.broad[x][y] == this.broad[i][j]; i--, j++)
 			count++;
-		for (int i = x + 1, j = y - 1; i < this.col && j >= 0 && this.broad[x][y] == this.broad[i][j]; i++, j--)
+		for (int i = x + 1, j = y - 1; i < this.row && j >= 0 && this.broad[x][y] == this.broad[i][j]; i++, j--)
 			count++;
 		if (count >= 4)
 			return true;
@@ -323,35 +535,38 @@ public class Gobang implements Environment<int[][]> {
 	}
 
 	/**
-	 * 获得当前情况下，每个已下子周围一格的点
+	 * 获得当前情况下，每个已下子周围radius格（默认一格）的点，可下点集合增量维护，只需要O(可下点数量)
 	 * 
-	 * @return 前情况下，每个已下子周围一格的所有点
+	 * @return 前情况下，每个已下子周围radius格的所有点的编码（x * 列数 + y）
 	 */
-	public List<Point> illegalPoints() {
-		Set<Point> points = new HashSet<>();
-		for (int i = 0; i < this.broad.length; i++) {
-			for (int j = 0; j < this.broad[i].length; j++) {
-				if (this.broad[i][j] != Gobang.POINT_INITAL) {
-					if (i < this.row - 1 && this.broad[i + 1][j] == Gobang.POINT_INITAL)
-						points.add(Point.newInstance(i + 1, j));
-					if (i > 0 && this.broad[i - 1][j] == Gobang.POINT_INITAL)
-						points.add(Point.newInstance(i - 1, j));
-					if (j < this.col - 1 && this.broad[i][j + 1] == Gobang.POINT_INITAL)
-						points.add(Point.newInstance(i, j + 1));
-					if (j > 0 && this.broad[i][j - 1] == Gobang.POINT_INITAL)
-						points.add(Point.newInstance(i, j - 1));
-					if (i < this.row - 1 && j < this.col - 1 && this.broad[i + 1][j + 1] == Gobang.POINT_INITAL)
-						points.add(Point.newInstance(i + 1, j + 1));
-					if (i > 0 && j > 0 && this.broad[i - 1][j - 1] == Gobang.POINT_INITAL)
-						points.add(Point.newInstance(i - 1, j - 1));
-					if (i < this.row - 1 && j > 0 && this.broad[i + 1][j - 1] == Gobang.POINT_INITAL)
-						points.add(Point.newInstance(i + 1, j - 1));
-					if (i > 0 && j < this.col - 1 && this.broad[i - 1][j + 1] == Gobang.POINT_INITAL)
-						points.add(Point.newInstance(i - 1, j + 1));
-				}
-			}
+	public int[] illegalPoints() {
+		if (this.near == null) {
+			buildCandidates();
 		}
-		return new ArrayList<>(points);
+		return Arrays.copyOf(this.candidateList, this.candidateSize);
+	}
+
+	/**
+	 * 可下点数量（空点并且周围radius格以内有子），增量维护，不需要扫描棋盘
+	 * 
+	 * @return 可下点数量
+	 */
+	public int candidateCount() {
+		if (this.near == null) {
+			buildCandidates();
+		}
+		return this.candidateSize;
+	}
+
+	/**
+	 * 第index个可下点，需要先调用 {@link #candidateCount()}
+	 * 
+	 * @param index
+	 *            下标
+	 * @return x * col + y
+	 */
+	public int candidateAt(int index) {
+		return this.candidateList[index];
 	}
 
 	/**
@@ -360,201 +575,98 @@ public class Gobang implements Environment<int[][]> {
 	 * @return 判断当前局势得分，依据以上已经定好的常量
 	 */
 	public Observation<int[][]> formalJudgment() {
-		// 判断玩家当前局势得分
-		double value = judgmentDetail(Gobang.POINT_PLAYER, Gobang.POINT_PLAYER);
-		// 判断玩家所有下一步情况局势得分
-		value += judgmentDetail(Gobang.POINT_INITAL, Gobang.POINT_PLAYER);
-		// 判断白棋当前情况得分
-		value += judgmentDetail(Gobang.POINT_AI, Gobang.POINT_AI);
+		double value = judgmentValue();
 		// 组装返回值
 		return new Observation<int[][]>(value, this.broad, value == Gobang.NORMAL_WINNER_REWARD ? false : true, null);
 	}
 
 	/**
-	 * 形式判断通用方法
+	 * 形势判断的得分，不创建任何对象，模拟对局使用
 	 * 
-	 * @param who
-	 *            找出哪些值的点
-	 * @param pointWho
-	 *            匹配值
-	 * @return
+	 * 第一次调用时计算所有线的得分，之后每次下子、撤销只更新经过该点的四条线，见 {@link PatternEvaluator}
+	 * 
+	 * @return 判断当前局势得分，不为0则表示形势判断有结果
 	 */
-	private double judgmentDetail(int who, int pointWho) {
-		// 所有需要判断的点，集合
-		List<Point> playerPoint = new ArrayList<>();
-		// 所有已经被判断过的点集合，后面判断时会跳过这些点
-		List<Point> judgedPoint = new ArrayList<>();
-		// 循环添加需要判断的点
-		for (int i = 0; i < broad.length; i++) {
-			for (int j = 0; j < broad[i].length; j++) {
-				if (broad[i][j] == who) {
-					playerPoint.add(Point.newInstance(i, j));
-				}
-			}
+	public double judgmentValue() {
+		if (this.evaluator == null) {
+			this.evaluator = new PatternEvaluator(this.broad);
 		}
-		double value = 0;
-		// 循环判断
-		for (int i = 0; i < playerPoint.size(); i++) {
-			Point point = playerPoint.get(i);
-			// 如果已经判断过当前点 ，则跳过此次判断
-			if (judgedPoint.contains(point)) {
-				continue;
-			}
-			// 将当前点添加到已经判断的集合中
-			judgedPoint.add(point);
-			// 获得返回值
-			value += pointJudgment(point.getX(), point.getY(), judgedPoint, pointWho, who);
+		return this.evaluator.getValue();
+	}
+
+	/**
+	 * 快速走子：任意一方下一步可以连成五子，直接返回这个点
+	 * 
+	 * @return 可以连成五子的点的编码，没有则返回 {@link #NO_MOVE}
+	 */
+	public int speedPoint() {
+		int[] illegalPoints = this.illegalPoints();
+		for (int i = 0; i < illegalPoints.length; i ++) {
+			int move = illegalPoints[i], x = move / this.col, y = move % this.col;
+			if (isFive(x, y, Gobang.POINT_AI) || isFive(x, y, Gobang.POINT_PLAYER)) return move;
 		}
-		// 返回
-		return value;
+		return Gobang.NO_MOVE;
 	}
 
 	/**
-	 * 判断一个点，它的价值 这个方法与判断是否结束方法很像，只是多一步给指定连接子数量给分的操作
+	 * 在空点(x, y)下子之后是否五连，只临时修改这一个点，不更新哈希、可下点集合等，棋盘只能被当前线程使用
 	 * 
 	 * @param x
-	 *            横坐标
+	 *            坐标x
 	 * @param y
-	 *            纵坐标
-	 * @param judgedPoint
-	 *            已经判断过的点集合，每次判断点之后都添加到这个集合中，减少判断次数
-	 * @param pointWho
-	 *            判断周围点，是谁的才加分
-	 * @return
+	 *            坐标y
+	 * @param who
+	 *            玩家 or AI
+	 * @return 是否五连
 	 */
-	private double pointJudgment(int x, int y, List<Point> judgedPoint, int pointWho, int who) {
-		double reward = 0;
-		int count = 0;
-		Point firstPoint = Point.newInstance(x, y), lastPoint = Point.newInstance(x, y);
-		for (int i = y - 1; i >= 0 && pointWho == this.broad[x][i]; i--) {
-			count++;
-			firstPoint = Point.newInstance(x, i);
-			judgedPoint.add(firstPoint);
-		}
-		for (int i = y + 1; i < this.row && pointWho == this.broad[x][i]; i++) {
-			count++;
-			lastPoint = Point.newInstance(x, i);
-			judgedPoint.add(lastPoint);
-		}
-		if (count >= 2 && firstPoint.getY() > 0 && lastPoint.getY() < this.row - 1) {
-			reward += countJudgment(count, firstPoint.getX(), firstPoint.getY() - 1, lastPoint.getX(),
-					lastPoint.getY() + 1, who);
-		}
-		count = 0;
-		firstPoint = Point.newInstance(x, y);
-		lastPoint = Point.newInstance(x, y);
-		for (int i = x - 1; i >= 0 && pointWho == this.broad[i][y]; i--) {
-			count++;
-			firstPoint = Point.newInstance(i, y);
-			judgedPoint.add(firstPoint);
-		}
-		for (int i = x + 1; i < this.col && pointWho == this.broad[i][y]; i++) {
-			count++;
-			lastPoint = Point.newInstance(i, y);
-			judgedPoint.add(lastPoint);
-		}
-		if (count >= 2 && firstPoint.getX() > 0 && lastPoint.getX() < this.col - 1) {
-			reward += countJudgment(count, firstPoint.getX() - 1, firstPoint.getY(), lastPoint.getX() + 1,
-					lastPoint.getY(), who);
-		}
-		;
-		count = 0;
-		firstPoint = Point.newInstance(x, y);
-		lastPoint = Point.newInstance(x, y);
-		for (int i = x - 1, j = y - 1; i >= 0 && j >= 0 && pointWho == this.broad[i][j]; i--, j--) {
-			count++;
-			firstPoint = Point.newInstance(i, j);
-			judgedPoint.add(firstPoint);
-		}
-		for (int i = x + 1, j = y + 1; i < this.col && j < this.row && pointWho == this.broad[i][j]; i++, j++) {
-			count++;
-			lastPoint = Point.newInstance(i, j);
-			judgedPoint.add(lastPoint);
-		}
-		if (count >= 2 && firstPoint.getX() > 0 && firstPoint.getY() > 0 && lastPoint.getX() < this.col - 1
-				&& lastPoint.getY() < this.row - 1) {
-			reward += countJudgment(count, firstPoint.getX() - 1, firstPoint.getY() - 1, lastPoint.getX() + 1,
-					lastPoint.getY() + 1, who);
-		}
-		count = 0;
-		firstPoint = Point.newInstance(x, y);
-		lastPoint = Point.newInstance(x, y);
-		for (int i = x - 1, j = y + 1; i >= 0 && j < this.row && pointWho == this.broad[i][j]; i--, j++) {
-			count++;
-			firstPoint = Point.newInstance(i, j);
-			judgedPoint.add(firstPoint);
-		}
-		for (int i = x + 1, j = y - 1; i < this.col && j >= 0 && pointWho == this.broad[i][j]; i++, j--) {
-			count++;
-			lastPoint = Point.newInstance(i, j);
-			judgedPoint.add(lastPoint);
-		}
-		if (count >= 2 && firstPoint.getX() > 0 && firstPoint.getY() < this.row - 1 && lastPoint.getX() < this.col - 1
-				&& lastPoint.getY() > 0) {
-			reward += countJudgment(count, firstPoint.getX() - 1, firstPoint.getY() + 1, lastPoint.getX() + 1,
-					lastPoint.getY() - 1, who);
-		}
-		return reward;
+	public boolean isFive(int x, int y, int who) {
+		this.broad[x][y] = who;
+		boolean done = isDone(x, y);
+		this.broad[x][y] = Gobang.POINT_INITAL;
+		return done;
 	}
 
 	/**
-	 * 根据count（连子数）返回对应的分数
+	 * 对手最后下的点是哪一方下的
 	 * 
-	 * @param count
-	 *            连子数
-	 * @param firstPointX
-	 *            最前面一个子的横坐标
-	 * @param firstPointY
-	 *            最前面一个子的纵坐标
-	 * @param lastPointX
-	 *            最后面一个子的横坐标
-	 * @param lastPointY
-	 *            最后面一个子的纵坐标
-	 * @param pointWho
-	 *            给分时区分AI与玩家的判断值
-	 * @return
+	 * @param lastMove
+	 *            对手最后下的点，没有则为 {@link #NO_MOVE}
+	 * @return 下这个点的一方，没有最后下的点时认为是玩家（AI先下）
 	 */
-	private double countJudgment(int count, int firstPointX, int firstPointY, int lastPointX, int lastPointY,
-			int pointWho) {
-		double reward = 0.0;
-		// 三连子
-		if (count == 2 && this.broad[firstPointX][firstPointY] == Gobang.POINT_INITAL
-				&& this.broad[lastPointX][lastPointY] == Gobang.POINT_INITAL) {
-			if (pointWho == Gobang.POINT_INITAL) {
-				reward += Gobang.PLAYER_NEXT_THREE;
-			} else {
-				reward += pointWho == Gobang.POINT_AI ? Gobang.AI_THREE : Gobang.PLAYER_THREE;
-			}
-			// 四连子
-		} else if (count == 3 && this.broad[firstPointX][firstPointY] == Gobang.POINT_INITAL
-				&& this.broad[lastPointX][lastPointY] == Gobang.POINT_INITAL) {
-			reward += pointWho == Gobang.POINT_AI ? Gobang.AI_FOUR_NO_BETWEEN : Gobang.PLAYER_FOUR_NO_BETWEEN;
-			// 四连子 有一边被挡住
-		} else if (count == 3 && (this.broad[firstPointX][firstPointY] == Gobang.POINT_INITAL
-				|| this.broad[lastPointX][lastPointY] == Gobang.POINT_INITAL)) {
-			if (pointWho == Gobang.POINT_INITAL) {
-				reward += Gobang.PLAYER_NEXT_FOUR_BETWEEN;
-			} else {
-				reward += pointWho == Gobang.POINT_AI ? Gobang.AI_FOUR_BETWEEN : Gobang.PLAYER_FOUR_BETWEEN;
-			}
-			// 五连子
-		} else if (count >= 4) {
-			reward += pointWho == Gobang.POINT_AI ? Gobang.AI_FIVE : Gobang.PLAYER_FIVE;
-		}
-		return reward;
+	public int lastMover(int lastMove) {
+		return lastMove == Gobang.NO_MOVE ? Gobang.POINT_PLAYER : get(lastMove);
 	}
-	
-	
-	public Point speedPoint() throws IllegalPointException {
-		List<Point> illegalPoints = this.illegalPoints();
-		for (int i = 0; i < illegalPoints.size(); i ++) {
-			Point point = illegalPoints.get(i);
-			Observation<int[][]> action = this.copy().action(point, Gobang.POINT_AI);
-			if (action.isDone()) return point;
-			action = this.copy().action(point, Gobang.POINT_PLAYER);
-			if (action.isDone()) return point;
-		}
-		return null;
+
+	/**
+	 * 点的编码
+	 * 
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
+	 * @return x * 列数 + y
+	 */
+	public int move(int x, int y) {
+		return x * this.col + y;
+	}
+
+	/**
+	 * 某个点上的值
+	 * 
+	 * @param move
+	 *            点的编码（x * 列数 + y）
+	 * @return 初始化点值、AI点值或者玩家点值
+	 */
+	public int get(int move) {
+		return this.broad[move / this.col][move % this.col];
+	}
+
+	public int getRow() {
+		return row;
+	}
+
+	public int getCol() {
+		return col;
 	}
 
 	public int[][] getBroad() {
@@ -563,11 +675,134 @@ public class Gobang implements Environment<int[][]> {
 
 	public void setBroad(int[][] broad) {
 		this.broad = broad;
+		this.hashes = this.symmetry.hashes(broad);
+		this.near = null;
+		this.evaluator = null;
+	}
+
+	/**
+	 * 获得当前棋盘的Zobrist哈希
+	 * 
+	 * @return 哈希值
+	 */
+	public long getHash() {
+		return this.hashes[0];
+	}
+
+	/**
+	 * 下子或者撤销(x, y)时，异或所有对称变换下的哈希
+	 */
+	private void updateHashes(int who, int x, int y) {
+		long[] keys = this.symmetry.keys();
+		int base = (who * this.row * this.col + x * this.col + y) * Symmetry.COUNT;
+		for (int s = 0; s < this.hashes.length; s++) {
+			this.hashes[s] ^= keys[base + s];
+		}
+	}
+
+	/**
+	 * 规范哈希：所有对称变换下的哈希中最小的一个，互相对称的局面规范哈希相同
+	 * 
+	 * @return 规范哈希
+	 */
+	public long getCanonicalHash() {
+		return this.hashes[canonicalSymmetry()];
+	}
+
+	/**
+	 * 在(x, y)下子之后的规范哈希，不修改棋盘
+	 * 
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
+	 * @param who
+	 *            玩家 or AI
+	 * @return 规范哈希
+	 */
+	public long canonicalHash(int x, int y, int who) {
+		long[] keys = this.symmetry.keys();
+		int base = (who * this.row * this.col + x * this.col + y) * Symmetry.COUNT;
+		long min = this.hashes[0] ^ keys[base];
+		for (int s = 1; s < this.hashes.length; s++) {
+			min = Math.min(min, this.hashes[s] ^ keys[base + s]);
+		}
+		return min;
+	}
+
+	/**
+	 * @return 把当前局面变成规范局面（哈希最小）的第一个变换
+	 */
+	private int canonicalSymmetry() {
+		int best = 0;
+		for (int s = 1; s < this.hashes.length; s++) {
+			if (this.hashes[s] < this.hashes[best])
+				best = s;
+		}
+		return best;
+	}
+
+	/**
+	 * 去掉对称的点：当前局面在某些变换下不变时（例如开局只有天元一个子），这些变换下互相对应的点只保留编码最小的一个，
+	 * 它们的子树完全相同。没有这样的变换（中局以后几乎总是）时直接返回原数组
+	 * 
+	 * @param moves
+	 *            点的编码
+	 * @return 去掉对称点之后的点，顺序不变
+	 */
+	public int[] uniqueMoves(int[] moves) {
+		int stabilizer = 0;
+		for (int s = 1; s < this.hashes.length; s++) {
+			if (this.hashes[s] == this.hashes[0])
+				stabilizer |= 1 << s;
+		}
+		if (stabilizer == 0) {
+			return moves;
+		}
+		int[] unique = new int[moves.length];
+		int size = 0;
+		for (int move : moves) {
+			boolean smallest = true;
+			for (int s = 1; s < this.hashes.length && smallest; s++) {
+				smallest = (stabilizer & 1 << s) == 0 || this.symmetry.transform(s, move) >= move;
+			}
+			if (smallest)
+				unique[size++] = move;
+		}
+		return Arrays.copyOf(unique, size);
+	}
+
+	/**
+	 * 当前局面的点对应到规范局面上的点：使局面哈希最小的所有变换中，取变换后编码最小的，互相对称的点得到同一个结果
+	 * 
+	 * @param move
+	 *            当前局面上的点
+	 * @return 规范局面上的点
+	 */
+	public int toCanonical(int move) {
+		long min = getCanonicalHash();
+		int canonical = Integer.MAX_VALUE;
+		for (int s = 0; s < this.hashes.length; s++) {
+			if (this.hashes[s] == min)
+				canonical = Math.min(canonical, this.symmetry.transform(s, move));
+		}
+		return canonical;
+	}
+
+	/**
+	 * 规范局面上的点对应回当前局面上的点，与 {@link #toCanonical(int)} 相反（互相对称的点中的一个）
+	 * 
+	 * @param move
+	 *            规范局面上的点
+	 * @return 当前局面上的点
+	 */
+	public int fromCanonical(int move) {
+		return this.symmetry.transform(this.symmetry.inverse(canonicalSymmetry()), move);
 	}
 	
 	public static void main(String[] args) throws IllegalPointException {
 		Gobang bang = Gobang.getGobang(19, 19);
-		bang.broad = new int[][] 
+		bang.setBroad(new int[][] 
 			{{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
 			 {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
 			 {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
@@ -586,14 +821,13 @@ public class Gobang implements Environment<int[][]> {
 			 {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
 			 {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
 			 {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0},
-			 {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}};
+			 {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}});
 
-		// System.out.println(bang.isDone(Point.newInstance(2, 3)));
+		// System.out.println(bang.isDone(2, 3));
 		// System.out.println(bang);
 		// bang.render();
 		// Gobang copy = (Gobang) bang.copy();
-		// Observation<int[][]> action = copy.action(Point.newInstance(0, 0),
-		// POINT_PLAYER);
+		// Observation<int[][]> action = copy.action(0, 0, POINT_PLAYER);
 		// System.out.println(action);
 		// copy.render();
 		// System.out.println(copy);
@@ -0,0 +1,376 @@
+package mcts.entity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import mcts.abs.SearchListener;
+import mcts.abs.TreePolicy;
+import mcts.exception.IllegalPointException;
+
+/**
+ * 五子棋引擎：在多步之间保留搜索树
+ *
+ * 引擎自己维护当前局面和一棵树（{@link TreeParallelUCT} 多线程共享）。每下一步（不管是AI还是对手），
+ * 如果根节点下有这一步的子节点，这个子节点就成为新的根节点，它的统计和子树保留下来，其它分支随旧根节点一起被回收；
+ * 没有则重新建根节点。AI下完、对手应一步之后，新的根节点通常已经有上一次思考留下的几千次模拟。
+ *
+ * 搜索总是在引擎自己的线程上进行：可以同步调用（{@link #search(TimeManager)}，等待结束），也可以用
+ * {@link #startSearch(TimeManager, SearchListener)} 异步进行，随时用 {@link #stop()} 中止。搜索进行中调用 {@link #play(int, int)} 或者 {@link #newGame()}
+ * 会先中止并等待搜索结束，引擎的状态只在搜索之间改变。
+ *
+ * AI下完以后可以调用 {@link #ponder()} 在对手思考的时间里继续扩大当前的树（后台思考）。对手的下法到来时，
+ * {@link #play(int, int)} 中止后台思考，对应的子树成为新的根节点（命中），后台思考的模拟全部保留下来。
+ *
+ * 设置了开局库（{@link #setOpeningBook(OpeningBook)}）时，调用方在搜索之前先用 {@link #bookMove()} 查开局库，查到就不用搜索。
+ * 搜索之前还应该先用 {@link #threatMove(long)} 看局面是否已经有强制的变化（成五、VCF、VCT以及它们的防守），有就直接下，
+ * 没有就把它的用时算进这一步（{@link TimeManager#charge(long)}）再搜索。
+ *
+ * @author Jervis
+ *
+ */
+public class GobangEngine {
+
+	/**
+	 * 当前局面
+	 */
+	private final Gobang position;
+	/**
+	 * 当前根节点
+	 */
+	private Node root;
+	/**
+	 * 共享一棵树的多线程搜索
+	 */
+	private final TreeParallelUCT treeParallelUCT;
+	/**
+	 * 最近一次换根时保留下来的模拟次数
+	 */
+	private int reusedVisits;
+	/**
+	 * 异步搜索的线程
+	 */
+	private final ExecutorService searchExecutor;
+	/**
+	 * 当前（或者最近一次）异步搜索
+	 */
+	private volatile CompletableFuture<SearchResult> current;
+	/**
+	 * 当前搜索的停止标志
+	 */
+	private volatile AtomicBoolean stop = new AtomicBoolean();
+	/**
+	 * 当前的异步搜索是否是后台思考
+	 */
+	private boolean pondering;
+	/**
+	 * 最近一次换根时，后台思考是否命中了这一步
+	 */
+	private boolean ponderHit;
+	/**
+	 * 开局库，为null时不使用
+	 */
+	private volatile OpeningBook openingBook;
+	/**
+	 * 威胁空间搜索，在引擎的锁内使用
+	 */
+	private final ThreatSolver threatSolver = new ThreatSolver();
+
+	/**
+	 * @param row
+	 *            行数
+	 * @param col
+	 *            列数
+	 * @param threads
+	 *            搜索线程数
+	 * @param transpositionSize
+	 *            置换表的大小，0表示不使用置换表
+	 * @param virtualLoss
+	 *            虚拟损失次数
+	 */
+	public GobangEngine(int row, int col, int threads, int transpositionSize, int virtualLoss) {
+		this.position = new Gobang(new int[row][col], row, col);
+		this.treeParallelUCT = new TreeParallelUCT(threads, transpositionSize, virtualLoss);
+		this.searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "gobang-engine");
+			thread.setDaemon(true);
+			return thread;
+		});
+		newGame();
+	}
+
+	/**
+	 * 新的一局，清空局面和搜索树
+	 */
+	public synchronized void newGame() {
+		stopAndWait();
+		this.position.reset();
+		this.root = new Node(Gobang.NO_MOVE, (Gobang) this.position.copy());
+		this.reusedVisits = 0;
+	}
+
+	/**
+	 * 在当前局面下一步，并把搜索树的根节点移到这一步
+	 *
+	 * @param move
+	 *            点的编码（x * 列数 + y）
+	 * @param who
+	 *            玩家 or AI
+	 * @return 返回对象包括是否结束，环境评分等信息
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	public synchronized Observation<int[][]> play(int move, int who) throws IllegalPointException {
+		boolean pondered = isSearching() && this.pondering;
+		stopAndWait();
+		Observation<int[][]> observation = this.position.action(move, who);
+		Node next = null;
+		if (this.root.hasChild()) {
+			for (Node child : this.root.getChilds()) {
+				if (child.getMove() == move && child.who() == who) {
+					next = child;
+					break;
+				}
+			}
+		}
+		this.ponderHit = pondered && next != null;
+		if (next == null) {
+			next = new Node(move, (Gobang) this.position.copy());
+			this.reusedVisits = 0;
+		} else {
+			// 断开与旧根节点的联系，传播到这里为止，旧树的其它分支可以被回收
+			next.setParent(null);
+			next.setGobang((Gobang) this.position.copy());
+			this.reusedVisits = next.getN();
+		}
+		this.root = next;
+		return observation;
+	}
+
+	/**
+	 * 查开局库：当前局面（轮到AI下）开局库中的下一步
+	 *
+	 * @return 点的编码，没有开局库或者开局库中没有这个局面返回 {@link Gobang#NO_MOVE}
+	 */
+	public synchronized int bookMove() {
+		OpeningBook openingBook = this.openingBook;
+		return openingBook == null ? Gobang.NO_MOVE : openingBook.probe(this.position);
+	}
+
+	/**
+	 * 威胁空间搜索：当前局面（轮到AI下）必须下的点，见 {@link ThreatSolver#solve(Gobang, int)}
+	 *
+	 * @return 点的编码，局面没有强制的变化时返回 {@link Gobang#NO_MOVE}
+	 */
+	public int threatMove() {
+		return threatMove(RolloutEngine.NO_DEADLINE);
+	}
+
+	/**
+	 * 限时的威胁空间搜索，过了截止时刻当作没有找到。一般用 {@link TimeManager#threatDeadline()}，
+	 * 之后要搜索时把用掉的时间 {@link TimeManager#charge(long)} 到这一步
+	 *
+	 * @param deadline
+	 *            截止时刻（System.nanoTime()），{@link RolloutEngine#NO_DEADLINE} 表示没有
+	 * @return 点的编码，局面没有强制的变化时返回 {@link Gobang#NO_MOVE}
+	 */
+	public synchronized int threatMove(long deadline) {
+		this.threatSolver.setDeadline(deadline);
+		return this.threatSolver.solve(this.position, Gobang.POINT_AI);
+	}
+
+	/**
+	 * 从当前根节点继续搜索
+	 *
+	 * @param millis
+	 *            搜索多少毫秒
+	 * @return 搜索结果
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	public SearchResult search(long millis) throws IllegalPointException {
+		return search(TimeManager.fixed(millis));
+	}
+
+	/**
+	 * 从当前根节点继续搜索，由时间管理分配本步的时间并决定能否提前结束。
+	 * 与 {@link #startSearch(TimeManager)} 一样在引擎的线程上进行，调用方等待结束；
+	 * 其它线程调用 {@link #play(int, int)} 或者 {@link #newGame()} 时同样先中止并等待这次搜索
+	 *
+	 * @param timeManager
+	 *            AI一方的棋钟
+	 * @return 搜索结果
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	public SearchResult search(TimeManager timeManager) throws IllegalPointException {
+		try {
+			return startSearch(timeManager, null).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IllegalPointException)
+				throw (IllegalPointException) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * 在引擎的线程上开始搜索当前局面，立即返回
+	 *
+	 * @param timeManager
+	 *            AI一方的棋钟
+	 * @return 搜索结束（到时、提前结束或者被中止）时完成
+	 */
+	public CompletableFuture<SearchResult> startSearch(TimeManager timeManager) {
+		return startSearch(timeManager, null);
+	}
+
+	/**
+	 * 在引擎的线程上开始搜索当前局面，立即返回。之前的搜索如果还在进行，先中止
+	 *
+	 * @param timeManager
+	 *            AI一方的棋钟
+	 * @param listener
+	 *            进度回调，在引擎的线程上调用，可以为null
+	 * @return 搜索结束（到时、提前结束或者被中止）时完成，完成时的结果是中止前的最好结果
+	 */
+	public synchronized CompletableFuture<SearchResult> startSearch(TimeManager timeManager,
+			SearchListener listener) {
+		stopAndWait();
+		this.pondering = false;
+		AtomicBoolean stop = this.stop = new AtomicBoolean();
+		Node root = this.root;
+		this.current = CompletableFuture.supplyAsync(() -> {
+			try {
+				return this.treeParallelUCT.search(root, timeManager, stop, listener);
+			} catch (IllegalPointException e) {
+				throw new CompletionException(e);
+			}
+		}, this.searchExecutor);
+		return this.current;
+	}
+
+	/**
+	 * 后台思考：不限时地继续搜索当前局面（通常是AI刚下完、轮到对手），直到 {@link #stop()}、
+	 * {@link #play(int, int)}、{@link #newGame()} 或者新的搜索开始
+	 *
+	 * @return 后台思考结束时完成
+	 */
+	public synchronized CompletableFuture<SearchResult> ponder() {
+		CompletableFuture<SearchResult> ponder = startSearch(TimeManager.infinite());
+		this.pondering = true;
+		return ponder;
+	}
+
+	/**
+	 * 中止当前搜索，不等待；搜索做完手上的模拟后结束，返回的结果仍然可以用
+	 */
+	public void stop() {
+		this.stop.set(true);
+	}
+
+	/**
+	 * @return 是否正在后台思考
+	 */
+	public synchronized boolean isPondering() {
+		return this.pondering && isSearching();
+	}
+
+	/**
+	 * @return 最近一次换根时，后台思考是否命中了这一步（命中时保留下来的模拟次数见 {@link #getReusedVisits()}）
+	 */
+	public boolean isPonderHit() {
+		return ponderHit;
+	}
+
+	/**
+	 * @return 是否有搜索正在进行（同步、异步搜索和后台思考都在引擎的线程上）
+	 */
+	public boolean isSearching() {
+		CompletableFuture<SearchResult> current = this.current;
+		return current != null && !current.isDone();
+	}
+
+	/**
+	 * 中止当前的搜索并等待结束
+	 */
+	private void stopAndWait() {
+		stop();
+		if (this.current != null) {
+			try {
+				this.current.join();
+			} catch (CompletionException e) {
+				// 搜索异常已经由调用方处理
+			}
+			this.current = null;
+		}
+	}
+
+	/**
+	 * 关闭线程池
+	 */
+	public void shutdown() {
+		stop();
+		this.searchExecutor.shutdownNow();
+		this.treeParallelUCT.shutdown();
+	}
+
+	/**
+	 * @return 当前局面（不要修改）
+	 */
+	public Gobang getPosition() {
+		return position;
+	}
+
+	/**
+	 * 更换树策略，需要在搜索开始之前设置
+	 *
+	 * @param treePolicy
+	 *            树策略
+	 */
+	public void setTreePolicy(TreePolicy treePolicy) {
+		this.treeParallelUCT.getGobangUCT().setTreePolicy(treePolicy);
+	}
+
+	/**
+	 * 模拟对局是否在位棋盘上进行，需要在搜索开始之前设置，见 {@link GobangUCT#setBitboardRollouts(boolean)}
+	 *
+	 * @param bitboardRollouts
+	 *            是否使用位棋盘
+	 */
+	public void setBitboardRollouts(boolean bitboardRollouts) {
+		this.treeParallelUCT.getGobangUCT().setBitboardRollouts(bitboardRollouts);
+	}
+
+	public Node getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return 威胁空间搜索，可以调整深度和节点数限制
+	 */
+	public ThreatSolver getThreatSolver() {
+		return threatSolver;
+	}
+
+	public OpeningBook getOpeningBook() {
+		return openingBook;
+	}
+
+	/**
+	 * @param openingBook
+	 *            开局库，null表示不使用
+	 */
+	public void setOpeningBook(OpeningBook openingBook) {
+		this.openingBook = openingBook;
+	}
+
+	/**
+	 * @return 最近一次换根时保留下来的模拟次数
+	 */
+	public int getReusedVisits() {
+		return reusedVisits;
+	}
+
+}
@@ -1,9 +1,9 @@
 package mcts.entity;
 
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
 
+import mcts.abs.TreePolicy;
 import mcts.abs.UCT;
 import mcts.exception.IllegalPointException;
 
@@ -23,31 +23,151 @@ public class GobangUCT implements UCT<int[][]> {
 	 * 多少次模拟后，当前节点拓展新节点
 	 */
 	public static final int EXPANSION_N = 40;
+	/**
+	 * 渐进扩展：节点扩展时先把分数最高的几个可下点变成子节点
+	 */
+	public static final int INITIAL_WIDTH = 5;
+	/**
+	 * 渐进扩展：节点的模拟次数每增长到这么多倍，再多一个可下点成为子节点
+	 */
+	public static final double WIDEN_FACTOR = 1.3;
+	private static final double LOG_WIDEN_FACTOR = Math.log(WIDEN_FACTOR);
+
+	/**
+	 * 每个线程一个模拟对局引擎
+	 */
+	private static final ThreadLocal<RolloutEngine> ROLLOUT_ENGINE = ThreadLocal.withInitial(RolloutEngine::new);
+
+	/**
+	 * 置换表，为null时不共享相同局面的统计
+	 */
+	private TranspositionTable transpositionTable;
+
+	/**
+	 * 每次选择经过节点时加的虚拟损失次数，0表示不使用（单线程搜索）
+	 */
+	private int virtualLoss;
+
+	/**
+	 * 扩展出的节点不保存棋盘，需要时从最近的有棋盘的祖先（根节点）开始沿路径在草稿棋盘上下子得到局面
+	 */
+	private boolean boardless;
+
+	/**
+	 * 选择子节点的树策略，默认UCB1
+	 */
+	private TreePolicy treePolicy = new Ucb1Policy(GobangUCT.C);
+
+	/**
+	 * 是否渐进扩展，false时扩展一次把所有可下点变成子节点
+	 */
+	private boolean progressiveWidening = true;
+
+	/**
+	 * 扩展时是否合并对称的点（局面在旋转、翻转下不变时，对应的点子树相同，只保留一个），见 {@link Gobang#uniqueMoves(int[])}
+	 */
+	private boolean mergeSymmetries = true;
+
+	/**
+	 * 多少次模拟后，当前节点拓展新节点，默认 {@link #EXPANSION_N}
+	 */
+	private int expansionN = GobangUCT.EXPANSION_N;
+
+	/**
+	 * 模拟对局是否在位棋盘（{@link BitGobang}）上进行，规则相同，复制和判断五连更快
+	 */
+	private boolean bitboardRollouts;
+
+	/**
+	 * 搜索的硬截止时刻（System.nanoTime()），模拟对局超过则中止，不传播
+	 */
+	private volatile long deadline = RolloutEngine.NO_DEADLINE;
+
+	/**
+	 * 当前搜索的统计，为null时不记录
+	 */
+	private volatile SearchStats stats;
+
+	public GobangUCT() {
+	}
+
+	/**
+	 * @param transpositionTable
+	 *            置换表，扩展出的节点按局面哈希共享统计
+	 */
+	public GobangUCT(TranspositionTable transpositionTable) {
+		this.transpositionTable = transpositionTable;
+	}
+
+	/**
+	 * @param transpositionTable
+	 *            置换表，扩展出的节点按局面哈希共享统计
+	 * @param virtualLoss
+	 *            虚拟损失次数，多线程共享一棵树时使用
+	 */
+	public GobangUCT(TranspositionTable transpositionTable, int virtualLoss) {
+		this.transpositionTable = transpositionTable;
+		this.virtualLoss = virtualLoss;
+	}
+
+	/**
+	 * @param transpositionTable
+	 *            置换表，扩展出的节点按局面哈希共享统计
+	 * @param virtualLoss
+	 *            虚拟损失次数，多线程共享一棵树时使用
+	 * @param boardless
+	 *            扩展出的节点是否不保存棋盘（只保存点），每个节点大约节省两份棋盘的内存
+	 */
+	public GobangUCT(TranspositionTable transpositionTable, int virtualLoss, boolean boardless) {
+		this.transpositionTable = transpositionTable;
+		this.virtualLoss = virtualLoss;
+		this.boardless = boardless;
+	}
 
 	/**
 	 * 选择
 	 * 
+	 * 一次遍历找出树策略分数最好的子节点，不对子节点列表排序（多个线程共享同一个列表），父节点相关的量每层只计算一次
+	 * 
 	 * @param node
 	 *            根节点
 	 * @return 最符合条件的叶节点
 	 */
 	@Override
 	public Node selection(Node node) {
+		// 模拟次数够了，先把下一批可下点变成子节点
+		if (this.progressiveWidening && node.canWiden()) {
+			widen(node);
+		}
 		// 获得所有子节点
 		List<Node> nodes = node.getChilds();
-		// 如果有子节点是从来没有被模拟过的，则返回该节点
-		for (Iterator<Node> iterator = nodes.iterator(); iterator.hasNext();) {
-			Node child = iterator.next();
-			if (child.isInitialization()) {
-				return child;
+		TreePolicy policy = this.treePolicy;
+		boolean unvisitedFirst = policy.visitUnvisitedFirst();
+		// 如果下一步是玩家下，平均分取反，按玩家的角度打分
+		boolean min = node.who() == Gobang.POINT_AI;
+		double parent = policy.prepare(node.getVirtualN());
+		Node base = null;
+		double best = 0;
+		for (int i = 0; i < nodes.size(); i++) {
+			Node child = nodes.get(i);
+			int n = child.getVirtualN();
+			// 如果有子节点是从来没有被模拟过的，则选择该节点
+			if (n == 0 && unvisitedFirst) {
+				base = child;
+				break;
 			}
+			double value = child.getVirtualValue();
+			double score = policy.score(min ? -value : value, child.getVirtualSquares(), n, child.getPrior(), parent);
+			if (base == null || score > best) {
+				base = child;
+				best = score;
+			}
+		}
+		if (this.virtualLoss > 0) {
+			base.addVirtualLoss(this.virtualLoss);
 		}
-		// 根据UCB公式进行排序
-		Collections.sort(nodes, (node1, node2) -> GobangUCT.ucb(node1) > GobangUCT.ucb(node2) ? 0 : GobangUCT.ucb(node1) > GobangUCT.ucb(node2) ? 1 : -1);
-		// 如果下一步是玩家下，则需要取UCB值最小的节点；否则取最大的节点
-		Node base = node.who() == Gobang.POINT_AI ? nodes.get(0) : nodes.get(nodes.size() - 1);
 		// 如果选择到的节点不是叶节点，继续往下寻找；否则返回选择的节点
-		if (base.hasChild()) {
+		if (base.hasChild() && !base.isInitialization()) {
 			return selection(base);
 		} else {
 			return base;
@@ -55,7 +175,10 @@ public class GobangUCT implements UCT<int[][]> {
 	}
 
 	/**
-	 * 扩展 （此处和UCT的扩展有点不一样，这里一次扩展会直接将所有可下点全部扩展）
+	 * 扩展 （此处和UCT的扩展有点不一样，这里一次扩展会把所有可下点按 {@link MoveOrdering} 的分数排序，
+	 * 分数最高的几个直接成为子节点，其余的记录在节点上，随模拟次数增长在 {@link #selection(Node)} 中渐进扩展）
+	 * 
+	 * 子节点先放在局部列表中，全部创建完成后一次性发布，其它线程不会看到扩展了一半的节点
 	 * 
 	 * @param node
 	 *            根节点
@@ -69,21 +192,169 @@ public class GobangUCT implements UCT<int[][]> {
 		if (node.getObservation() != null && node.isDone()) {
 			return node;
 		}
-		// 获得所有可以被下的点，此处控制这些点都距离已下点的周围一格
-		List<Point> illegalPoints = node.getGobang().illegalPoints();
-		// 循环添加这些点成为节点的子节点
-		for (Iterator<Point> iterator = illegalPoints.iterator(); iterator.hasNext();) {
-			Point point = iterator.next();
-			Gobang gobang = (Gobang) node.getGobang().copy();
-			Observation<int[][]> action = gobang.action(point,
-					node.who() == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI);
-			Node child = new Node(node, point, gobang);
-			child.setObservation(action);
-			node.addChild(child);
+		// 同一个节点只扩展一次，其它线程直接返回
+		if (!node.tryExpand()) {
+			return node;
+		}
+		// 不保存棋盘的模式下，扩展时要在棋盘上临时下子判断五连，使用当前线程的草稿棋盘
+		Gobang board = this.boardless || node.getGobang() == null ? enter(node) : node.getGobang();
+		try {
+			// 获得所有可以被下的点，此处控制这些点都距离已下点的周围一格
+			int[] illegalPoints = candidates(board);
+			int who = node.who() == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
+			// 按分数从高到低排序，分数占总分的比例作为先验概率
+			int[] scores = new int[illegalPoints.length];
+			int total = MoveOrdering.rank(board, who, illegalPoints, scores);
+			float[] priors = new float[illegalPoints.length];
+			for (int i = 0; i < illegalPoints.length; i++) {
+				priors[i] = (float) scores[i] / total;
+			}
+			int width = this.progressiveWidening ? Math.min(illegalPoints.length, width(node.getN()))
+					: illegalPoints.length;
+			List<Node> childs = childs(node, board, illegalPoints, priors, 0, width, who);
+			node.setCandidates(illegalPoints, priors, width);
+			node.setChilds(childs);
+		} finally {
+			if (board != node.getGobang()) {
+				leave(board, node);
+			}
 		}
 		return node;
 	}
 
+	/**
+	 * 扩展的候选点：所有可下点，合并对称的点
+	 */
+	private int[] candidates(Gobang board) {
+		int[] illegalPoints = board.illegalPoints();
+		return this.mergeSymmetries ? board.uniqueMoves(illegalPoints) : illegalPoints;
+	}
+
+	/**
+	 * 渐进扩展：把排好序的可下点中，模拟次数允许的下一批变成子节点，同一批只有一个线程扩展
+	 * 
+	 * @param node
+	 *            已经扩展过的节点
+	 */
+	private void widen(Node node) {
+		int from = node.getWidth();
+		int to = Math.min(node.getCandidates().length, width(node.getVirtualN()));
+		if (to <= from || !node.tryWiden(from, to)) {
+			return;
+		}
+		Gobang board = this.boardless || node.getGobang() == null ? enter(node) : node.getGobang();
+		try {
+			int who = node.who() == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
+			node.addChilds(childs(node, board, node.getCandidates(), node.getPriors(), from, to, who));
+		} catch (IllegalPointException e) {
+			e.printStackTrace();
+		} finally {
+			if (board != node.getGobang()) {
+				leave(board, node);
+			}
+		}
+	}
+
+	/**
+	 * 模拟了n次的节点应该有多少个子节点
+	 * 
+	 * @param n
+	 *            节点模拟次数
+	 * @return 子节点个数（没有考虑可下点个数）
+	 */
+	int width(int n) {
+		if (n <= this.expansionN) {
+			return GobangUCT.INITIAL_WIDTH;
+		}
+		return GobangUCT.INITIAL_WIDTH + (int) (Math.log((double) n / this.expansionN) / LOG_WIDEN_FACTOR);
+	}
+
+	/**
+	 * 把第from到to-1个可下点变成子节点
+	 */
+	private List<Node> childs(Node node, Gobang board, int[] moves, float[] priors, int from, int to, int who)
+			throws IllegalPointException {
+		List<Node> childs = new ArrayList<>(to - from);
+		for (int i = from; i < to; i++) {
+			Node child = this.boardless ? boardlessChild(node, board, moves[i], who)
+					: child(node, board, moves[i], who);
+			child.setPrior(priors[i]);
+			childs.add(child);
+		}
+		SearchStats stats = this.stats;
+		if (stats != null) {
+			stats.addNodes(childs.size());
+		}
+		return childs;
+	}
+
+	/**
+	 * 保存棋盘的子节点：复制棋盘并下子
+	 */
+	private Node child(Node node, Gobang board, int move, int who) throws IllegalPointException {
+		Gobang gobang = (Gobang) board.copy();
+		Observation<int[][]> action = gobang.action(move, who);
+		Node child = new Node(node, move, who, gobang);
+		child.setObservation(action);
+		// 不同顺序到达的相同局面、互相对称的局面共用一份统计
+		if (this.transpositionTable != null) {
+			child.setStats(this.transpositionTable.getOrCreate(gobang.getCanonicalHash()));
+		}
+		return child;
+	}
+
+	/**
+	 * 不保存棋盘的子节点：只记录点，结束的节点记录结果，规范哈希由父局面增量得到
+	 */
+	private Node boardlessChild(Node node, Gobang board, int move, int who) {
+		int x = move / board.getCol(), y = move % board.getCol();
+		Node child = new Node(node, move, who, null);
+		if (board.isFive(x, y, who)) {
+			child.setObservation(new Observation<int[][]>(who == Gobang.POINT_AI ? Gobang.AI_FIVE : Gobang.PLAYER_FIVE,
+					null, true, "winner", who == Gobang.POINT_AI ? Gobang.WINNER_AI : Gobang.WINNER_PLAYER));
+		}
+		if (this.transpositionTable != null) {
+			child.setStats(this.transpositionTable.getOrCreate(board.canonicalHash(x, y, who)));
+		}
+		return child;
+	}
+
+	/**
+	 * 取得没有棋盘的节点的局面：当前线程的草稿棋盘放在最近的有棋盘的祖先上，再沿路径下子，用完需要调用 {@link #leave(Gobang, Node)}
+	 * 
+	 * @param node
+	 *            没有棋盘的节点
+	 * @return 放在节点局面上的草稿棋盘
+	 */
+	private static Gobang enter(Node node) {
+		Node base = node;
+		while (base.getGobang() == null) {
+			base = base.getParent();
+		}
+		Gobang board = ROLLOUT_ENGINE.get().board(base.getGobang());
+		replay(board, node);
+		return board;
+	}
+
+	private static void replay(Gobang board, Node node) {
+		if (node.getGobang() != null) {
+			return;
+		}
+		replay(board, node.getParent());
+		int move = node.getMove();
+		board.make(move / board.getCol(), move % board.getCol(), node.who());
+	}
+
+	/**
+	 * 撤销 {@link #enter(Node)} 在草稿棋盘上下的子
+	 */
+	private static void leave(Gobang board, Node node) {
+		for (Node n = node; n.getGobang() == null; n = n.getParent()) {
+			int move = n.getMove();
+			board.unmake(move / board.getCol(), move % board.getCol());
+		}
+	}
+
 	/**
 	 * 模拟
 	 * 
@@ -93,10 +364,56 @@ public class GobangUCT implements UCT<int[][]> {
 	 */
 	@Override
 	public Observation<int[][]> simulation(Node node) {
+		SearchStats stats = this.stats;
+		long start = stats == null ? 0 : System.nanoTime();
 		// 选择最适合的子节点
 		Node child = selection(node);
-		// 如果当前选择的节点没有子节点，并且已经超过需要扩展的模拟次数，进行扩展，并且选择出当前节点最好的子节点
-		if (!child.hasChild() && child.getN() > GobangUCT.EXPANSION_N) {
+		try {
+			long selected = stats == null ? 0 : System.nanoTime();
+			child = expandLeaf(child);
+			long expanded = stats == null ? 0 : System.nanoTime();
+			double reward = playout(child);
+			// 到了截止时间被中止的模拟不传播
+			if (Double.isNaN(reward)) {
+				return null;
+			}
+			long played = stats == null ? 0 : System.nanoTime();
+			// 将模拟对局的 得分向上传播
+			backPropagation(child, reward);
+			if (stats != null) {
+				stats.recordSimulation(depth(node, child), selected - start, expanded - selected, played - expanded,
+						System.nanoTime() - played);
+			}
+			return new Observation<int[][]>(reward, null, true, null);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			// 撤销选择时加上的虚拟损失
+			removeVirtualLoss(node, child);
+		}
+	}
+
+	/**
+	 * 叶节点在开始节点之下的深度
+	 */
+	private static int depth(Node node, Node child) {
+		int depth = 0;
+		for (Node n = child; n != node && n != null; n = n.getParent()) {
+			depth++;
+		}
+		return depth;
+	}
+
+	/**
+	 * 如果选择的节点没有子节点，并且已经超过需要扩展的模拟次数，进行扩展，并且选择出当前节点最好的子节点
+	 * 
+	 * @param child
+	 *            选择出的叶节点
+	 * @return 需要模拟的叶节点
+	 */
+	Node expandLeaf(Node child) {
+		if (!child.hasChild() && child.getN() > this.expansionN) {
 			try {
 				expansion(child);
 				// 如果扩展之后有子节点，则选择子节点
@@ -107,48 +424,45 @@ public class GobangUCT implements UCT<int[][]> {
 				e.printStackTrace();
 			}
 		}
-		// 深度复制节点，以免模拟的情况，影响到树结构
-		Node copyNode = child.copy();
-		// 当作没有任何叶节点是已经结束的
-		int who = copyNode.who();
-		// 第一次进来直接运行形势判断
-		Observation<int[][]> observation = copyNode.getGobang().formalJudgment();
-		try {
-			// 如果形势判断已经有结果 则 直接不进行模拟
-			while (!observation.isDone()) {
-				// 如果节点已经是结束状态，也不进行模拟，并且用节点的状态进行传播
-				if (copyNode.isDone()) {
-					observation = copyNode.getObservation();
-					break;
-				}
-				// 如果节点没有子节点，扩展节点
-				if (!copyNode.hasChild()) {
-					expansion(copyNode);
-					// 如果扩展之后还没有子节点，重新模拟
-					if (!copyNode.hasChild()) {
-						copyNode = child.copy();
-						observation = copyNode.getGobang().formalJudgment();
-						continue;
-					}
-				}
-				who = who == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
-				int index = (int) (Math.random() * copyNode.getChilds().size());
-				// 随机获得一个子节点去模拟对局
-				Node selection = copyNode.getChilds().get(index);
-				observation = copyNode.getGobang().action(selection.getPoint(), who);
-				// 如果当前下的子是AI同时没有结束，则进行棋盘的形势判断
-				if (who == Gobang.POINT_AI && !observation.isDone()) {
-					observation = copyNode.getGobang().formalJudgment();
-				}
-				copyNode = selection;
+		return child;
+	}
+
+	/**
+	 * 撤销从根节点到叶节点路径上选择时加上的虚拟损失
+	 * 
+	 * @param node
+	 *            根节点
+	 * @param child
+	 *            叶节点
+	 */
+	void removeVirtualLoss(Node node, Node child) {
+		if (this.virtualLoss > 0) {
+			for (Node n = child; n != node && n != null; n = n.getParent()) {
+				n.removeVirtualLoss(this.virtualLoss);
 			}
-			// 将模拟对局的 得分向上传播
-			double reward = observation.getReward();
-			backPropagation(child, reward);
-		} catch (Exception e) {
-			e.printStackTrace();
 		}
-		return observation;
+	}
+
+	/**
+	 * 从叶节点开始随机对局（不传播），使用当前线程的模拟对局引擎，不复制节点和棋盘
+	 * 
+	 * @param child
+	 *            选择出的叶节点
+	 * @return 模拟对局的得分，到了截止时间被中止返回 {@link RolloutEngine#ABORTED}
+	 */
+	double playout(Node child) {
+		// 如果节点已经是结束状态，不进行模拟，用节点的状态进行传播
+		if (child.getObservation() != null && child.isDone()) {
+			return child.getObservation().getReward();
+		}
+		// 保存棋盘的节点先装入草稿棋盘（使用位棋盘时直接装入位棋盘），不保存棋盘的节点直接在沿路径下子的草稿棋盘上模拟
+		Gobang board = child.getGobang() == null ? enter(child)
+				: this.bitboardRollouts ? child.getGobang() : ROLLOUT_ENGINE.get().board(child.getGobang());
+		try {
+			return rollout(board, child.who());
+		} finally {
+			leave(board, child);
+		}
 	}
 
 	/**
@@ -166,24 +480,257 @@ public class GobangUCT implements UCT<int[][]> {
 	}
 	
 	
+	/**
+	 * 传播多次模拟的总得分，向父节点传播，直到根节点
+	 * @param node	叶节点
+	 * @param sum	总得分
+	 * @param squares	得分平方和
+	 * @param count	模拟次数
+	 */
+	public void backPropagation(Node node, double sum, double squares, int count) {
+		for (Node n = node; n != null; n = n.getParent()) {
+			n.update(sum, squares, count);
+		}
+	}
+
 	/**
 	 * 单节点传播方法
 	 * @param node	本次节点
 	 * @param value 本次获得的分数
 	 */
 	private void backUpOne(Node node, double value) {
-		double oldValueTotal = node.getValue() * node.getN();
-		node.addOneCount();
-		node.setValue((oldValueTotal + value) / node.getN());
+		node.update(value);
+	}
+
+	/**
+	 * 在紧凑存储上选择：从节点开始向下选择，同时在棋盘上下选择路径上的子
+	 * 
+	 * @param store
+	 *            紧凑存储
+	 * @param node
+	 *            开始节点，必须有子节点
+	 * @param board
+	 *            开始节点对应的局面，返回时为叶节点对应的局面
+	 * @return 最符合条件的叶节点
+	 */
+	public int selection(NodeStore store, int node, Gobang board) {
+		int col = board.getCol();
+		TreePolicy policy = this.treePolicy;
+		boolean unvisitedFirst = policy.visitUnvisitedFirst();
+		while (true) {
+			// 如果下一步是玩家下，平均分取反，按玩家的角度打分
+			boolean min = store.who(node) == Gobang.POINT_AI;
+			int parentN = store.getN(node);
+			double parent = policy.prepare(parentN);
+			int base = NodeStore.NONE;
+			double best = 0;
+			// 子节点按分数从高到低排列，渐进扩展时只考虑前面模拟次数允许的几个
+			int count = this.progressiveWidening ? Math.min(store.getChildCount(node), width(parentN))
+					: store.getChildCount(node);
+			for (int child = store.getFirstChild(node), end = child + count; child < end; child++) {
+				int n = store.getN(child);
+				// 如果有子节点是从来没有被模拟过的，则选择该节点
+				if (n == 0 && unvisitedFirst) {
+					base = child;
+					break;
+				}
+				double value = store.getValue(child);
+				double score = policy.score(min ? -value : value, store.getSquares(child), n, store.getPrior(child),
+						parent);
+				if (base == NodeStore.NONE || score > best) {
+					base = child;
+					best = score;
+				}
+			}
+			int move = store.getMove(base);
+			board.make(move / col, move % col, store.who(base));
+			// 如果选择到的节点不是叶节点，继续往下寻找；否则返回选择的节点
+			if (!store.hasChild(base) || store.getN(base) == 0)
+				return base;
+			node = base;
+		}
+	}
+
+	/**
+	 * 在紧凑存储上扩展：一次扩展所有可下点，按 {@link MoveOrdering} 的分数从高到低分配在连续的下标上，存储已满则不扩展。
+	 * 渐进扩展时选择只考虑前面的几个子节点
+	 * 
+	 * @param store
+	 *            紧凑存储
+	 * @param node
+	 *            需要扩展的节点
+	 * @param board
+	 *            节点对应的局面（不会被修改）
+	 * @return 扩展之后的节点
+	 */
+	public int expansion(NodeStore store, int node, Gobang board) {
+		// 如果节点判断已经结束，或者已经扩展过，直接返回
+		if (store.isDone(node) || store.hasChild(node)) {
+			return node;
+		}
+		int[] illegalPoints = candidates(board);
+		int first = store.allocateChildren(node, illegalPoints.length);
+		if (first == NodeStore.NONE) {
+			return node;
+		}
+		int who = store.who(node) == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
+		int col = board.getCol();
+		int[] scores = new int[illegalPoints.length];
+		int total = MoveOrdering.rank(board, who, illegalPoints, scores);
+		for (int i = 0; i < illegalPoints.length; i++) {
+			int move = illegalPoints[i];
+			store.initChild(first + i, node, move, who, board.isFive(move / col, move % col, who),
+					(float) scores[i] / total);
+		}
+		return node;
 	}
 
 	/**
-	 * UCB公式
-	 * @param node	节点
-	 * @return		UCB分数
+	 * 在紧凑存储上模拟一次：选择、扩展、模拟对局、传播，节点上不保存棋盘，沿路径在同一个棋盘上下子，结束后全部撤销
+	 * 
+	 * @param store
+	 *            紧凑存储，根节点已经扩展
+	 * @param board
+	 *            根节点对应的局面，只能被当前线程使用，返回时复原
+	 * @return 模拟对局的得分，到了截止时间被中止返回 {@link RolloutEngine#ABORTED}
+	 */
+	public double simulation(NodeStore store, Gobang board) {
+		int leaf = selection(store, NodeStore.ROOT, board);
+		try {
+			// 如果选择的节点没有子节点，并且已经超过需要扩展的模拟次数，进行扩展，并且选择出当前节点最好的子节点
+			if (!store.hasChild(leaf) && store.getN(leaf) > this.expansionN) {
+				expansion(store, leaf, board);
+				if (store.hasChild(leaf)) {
+					leaf = selection(store, leaf, board);
+				}
+			}
+			// 如果节点已经是结束状态，不进行模拟，用节点的状态进行传播
+			double reward = store.isDone(leaf) ? store.who(leaf) == Gobang.POINT_AI ? Gobang.AI_FIVE : Gobang.PLAYER_FIVE
+					: rollout(board, store.who(leaf));
+			// 到了截止时间被中止的模拟不传播
+			if (Double.isNaN(reward)) {
+				return reward;
+			}
+			for (int n = leaf; n != NodeStore.NONE; n = store.getParent(n)) {
+				store.update(n, reward);
+			}
+			return reward;
+		} finally {
+			// 撤销沿路径下的子，棋盘回到根节点的局面
+			int col = board.getCol();
+			for (int n = leaf; n != NodeStore.ROOT; n = store.getParent(n)) {
+				int move = store.getMove(n);
+				board.unmake(move / col, move % col);
+			}
+		}
+	}
+
+	/**
+	 * 在当前线程的模拟对局引擎上，从给定的局面开始随机对局，打开了位棋盘时先装入位棋盘
+	 */
+	private double rollout(Gobang board, int who) {
+		RolloutEngine engine = ROLLOUT_ENGINE.get();
+		return engine.play(this.bitboardRollouts ? engine.bits(board) : board, who, this.deadline);
+	}
+
+	public TranspositionTable getTranspositionTable() {
+		return transpositionTable;
+	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * 设置硬截止时刻，模拟对局超过则中止
+	 * 
+	 * @param deadline
+	 *            截止时刻（System.nanoTime()），{@link RolloutEngine#NO_DEADLINE} 表示没有
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	public int getExpansionN() {
+		return expansionN;
+	}
+
+	/**
+	 * 设置节点扩展需要的模拟次数，需要在搜索开始之前设置
+	 * 
+	 * @param expansionN
+	 *            多少次模拟后扩展
+	 */
+	public void setExpansionN(int expansionN) {
+		this.expansionN = expansionN;
+	}
+
+	public boolean isProgressiveWidening() {
+		return progressiveWidening;
+	}
+
+	/**
+	 * 打开或关闭渐进扩展，需要在搜索开始之前设置
+	 * 
+	 * @param progressiveWidening
+	 *            是否渐进扩展
+	 */
+	public void setProgressiveWidening(boolean progressiveWidening) {
+		this.progressiveWidening = progressiveWidening;
+	}
+
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * 设置当前搜索的统计，之后的模拟和扩展都记录到这里，null表示不记录
+	 * 
+	 * @param stats
+	 *            搜索统计
+	 */
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
+	}
+
+	public boolean isMergeSymmetries() {
+		return mergeSymmetries;
+	}
+
+	/**
+	 * @param mergeSymmetries
+	 *            扩展时是否合并对称的点
+	 */
+	public void setMergeSymmetries(boolean mergeSymmetries) {
+		this.mergeSymmetries = mergeSymmetries;
+	}
+
+	public boolean isBitboardRollouts() {
+		return bitboardRollouts;
+	}
+
+	/**
+	 * 模拟对局是否在位棋盘（{@link BitGobang}）上进行，需要在搜索开始之前设置
+	 * 
+	 * @param bitboardRollouts
+	 *            是否使用位棋盘
+	 */
+	public void setBitboardRollouts(boolean bitboardRollouts) {
+		this.bitboardRollouts = bitboardRollouts;
+	}
+
+	public TreePolicy getTreePolicy() {
+		return treePolicy;
+	}
+
+	/**
+	 * 更换树策略，需要在搜索开始之前设置
+	 * 
+	 * @param treePolicy
+	 *            树策略
 	 */
-	private static double ucb(Node node) {
-		return node.getValue() + GobangUCT.C * Math.sqrt(2 * Math.log(node.getParent().getN()) / node.getN());
+	public void setTreePolicy(TreePolicy treePolicy) {
+		this.treePolicy = treePolicy;
 	}
 
 }
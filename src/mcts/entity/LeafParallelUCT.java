@@ -0,0 +1,147 @@
+package mcts.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mcts.exception.IllegalPointException;
+
+/**
+ * 叶并行搜索
+ *
+ * 单线程做选择和扩展，选出一个叶节点之后，在线程池上同时从这个叶节点跑K次随机对局，
+ * 得分汇总之后只沿父节点向上传播一次。选择的开销被K次模拟分摊，适合树比较浅、选择开销占比大的情况。
+ *
+ * @author Jervis
+ *
+ */
+public class LeafParallelUCT {
+
+	/**
+	 * 每个叶节点一次模拟多少局
+	 */
+	private final int batch;
+	/**
+	 * 单线程使用的UCT
+	 */
+	private final GobangUCT gobangUCT;
+	/**
+	 * 模拟线程池
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * @param threads
+	 *            模拟线程数
+	 * @param batch
+	 *            每个叶节点一次模拟多少局
+	 * @param transpositionSize
+	 *            置换表的大小，0表示不使用置换表
+	 */
+	public LeafParallelUCT(int threads, int batch, int transpositionSize) {
+		if (threads < 1 || batch < 1)
+			throw new IllegalArgumentException(String.format("threads %s and batch %s must be positive", threads, batch));
+		this.batch = batch;
+		this.gobangUCT = new GobangUCT(transpositionSize > 0 ? new TranspositionTable(transpositionSize) : null, 0,
+				true);
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "uct-leaf-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * 模拟：选择一个叶节点，批量模拟K局，汇总传播
+	 *
+	 * @param node
+	 *            根节点
+	 * @return 成功完成的模拟局数
+	 * @throws InterruptedException
+	 *             等待模拟结果时被中断
+	 */
+	public int simulation(Node node) throws InterruptedException {
+		Node leaf = this.gobangUCT.expandLeaf(this.gobangUCT.selection(node));
+		List<Callable<Double>> playouts = new ArrayList<>(this.batch);
+		for (int i = 0; i < this.batch; i++) {
+			playouts.add(() -> this.gobangUCT.playout(leaf));
+		}
+		double sum = 0, squares = 0;
+		int count = 0;
+		for (Future<Double> future : this.executor.invokeAll(playouts)) {
+			try {
+				double reward = future.get();
+				// 到了截止时间被中止的模拟不传播
+				if (Double.isNaN(reward))
+					continue;
+				sum += reward;
+				squares += reward * reward;
+				count++;
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+		if (count > 0) {
+			this.gobangUCT.backPropagation(leaf, sum, squares, count);
+		}
+		return count;
+	}
+
+	/**
+	 * 搜索
+	 *
+	 * @param gobang
+	 *            当前棋盘（不会被修改）
+	 * @param lastMove
+	 *            对手最后下的点，没有则为 {@link Gobang#NO_MOVE}
+	 * @param millis
+	 *            搜索多少毫秒
+	 * @return 搜索结果，模拟次数按局数统计
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	public SearchResult search(Gobang gobang, int lastMove, long millis) throws IllegalPointException {
+		long start = System.currentTimeMillis();
+		long deadline = System.nanoTime() + millis * 1000000;
+		this.gobangUCT.setDeadline(deadline);
+		Node root = new Node(lastMove, (Gobang) gobang.copy());
+		this.gobangUCT.expansion(root);
+		SearchResult result = new SearchResult(root, 1);
+		long simulations = 0;
+		try {
+			while (root.hasChild() && System.nanoTime() - deadline < 0) {
+				simulations += simulation(root);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			this.gobangUCT.setDeadline(RolloutEngine.NO_DEADLINE);
+		}
+		result.setSimulations(0, simulations);
+		result.setElapsed(System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * 关闭线程池
+	 */
+	public void shutdown() {
+		this.executor.shutdownNow();
+	}
+
+	public int getBatch() {
+		return batch;
+	}
+
+	/**
+	 * @return 搜索使用的UCT，可以用 {@link GobangUCT#setTreePolicy(mcts.abs.TreePolicy)} 更换树策略
+	 */
+	public GobangUCT getGobangUCT() {
+		return gobangUCT;
+	}
+
+}
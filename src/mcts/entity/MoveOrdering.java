@@ -0,0 +1,90 @@
+package mcts.entity;
+
+import java.util.Arrays;
+
+/**
+ * 着法排序：给可下点打一个便宜的分数，用于渐进扩展（先扩展分数高的点）和先验概率
+ *
+ * 假设在(x, y)下子，查 {@link PatternTable} 得到四个方向上形成的棋型（进攻），
+ * 再从对方的视角得到对方在这里下子会形成的棋型（防守），按棋型加权求和。
+ * 每个点只读四个方向各9个格子，比复制棋盘、下子、评估便宜得多。
+ *
+ * @author Jervis
+ *
+ */
+public final class MoveOrdering {
+
+	/**
+	 * 四个方向：横、竖、主对角线、副对角线
+	 */
+	private static final int[][] DIRECTIONS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+
+	/**
+	 * 进攻棋型的分数，下标为 {@link PatternTable} 的棋型，没有棋型也有1分，保证先验概率不为0
+	 */
+	static final int[] ATTACK = { 1, 4, 5, 20, 30, 400, 20000 };
+	/**
+	 * 防守棋型的分数：挡住对方同样棋型的价值略低于自己形成
+	 */
+	static final int[] DEFENSE = { 0, 2, 3, 15, 20, 200, 10000 };
+
+	private MoveOrdering() {
+	}
+
+	/**
+	 * 一个空点的分数
+	 *
+	 * @param broad
+	 *            二维数组棋盘
+	 * @param x
+	 *            横坐标
+	 * @param y
+	 *            纵坐标
+	 * @param who
+	 *            下子的一方
+	 * @return 分数，大于0
+	 */
+	public static int score(int[][] broad, int x, int y, int who) {
+		int other = who == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
+		int score = 0;
+		for (int[] d : DIRECTIONS) {
+			// 中心是空点，加上CENTER就是在中心下了一个己方子
+			score += ATTACK[PatternTable.type(PatternTable.encode(broad, x, y, d[0], d[1], who) + PatternTable.CENTER)];
+			score += DEFENSE[PatternTable.type(PatternTable.encode(broad, x, y, d[0], d[1], other) + PatternTable.CENTER)];
+		}
+		return score;
+	}
+
+	/**
+	 * 把可下点按分数从高到低排序（分数相同按编码），同时写出每个点的分数
+	 *
+	 * @param board
+	 *            当前棋盘
+	 * @param who
+	 *            下子的一方
+	 * @param moves
+	 *            可下点，排序后写回
+	 * @param scores
+	 *            写出与排序后的点一一对应的分数，长度不小于点数
+	 * @return 分数总和
+	 */
+	public static int rank(Gobang board, int who, int[] moves, int[] scores) {
+		int[][] broad = board.getBroad();
+		int col = board.getCol();
+		long[] keys = new long[moves.length];
+		for (int i = 0; i < moves.length; i++) {
+			int score = score(broad, moves[i] / col, moves[i] % col, who);
+			// 高32位放分数的相反数，升序排序后分数从高到低
+			keys[i] = ((long) -score << 32) | moves[i];
+		}
+		Arrays.sort(keys);
+		int total = 0;
+		for (int i = 0; i < keys.length; i++) {
+			moves[i] = (int) keys[i];
+			scores[i] = (int) -(keys[i] >> 32);
+			total += scores[i];
+		}
+		return total;
+	}
+
+}
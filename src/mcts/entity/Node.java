@@ -2,6 +2,7 @@ package mcts.entity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import mcts.exception.IllegalPointException;
 
@@ -12,16 +13,26 @@ import mcts.exception.IllegalPointException;
  */
 public class Node {
 
+	private static final AtomicIntegerFieldUpdater<Node> EXPANDED = AtomicIntegerFieldUpdater.newUpdater(Node.class,
+			"expanded");
+	private static final AtomicIntegerFieldUpdater<Node> WIDTH = AtomicIntegerFieldUpdater.newUpdater(Node.class,
+			"width");
+
 	private Node parent;		// 父节点
-	private int n;				// 模拟了多少次
-	private double value;		// 分数
-	private List<Node> childs;	// 所有子节点
-	private Point point;		// 点
-	private Gobang gobang;		// 五子棋
+	private NodeStats stats = new NodeStats();	// 模拟次数与分数，置换表中相同局面的节点共享
+	private volatile List<Node> childs;	// 所有子节点，扩展完成后一次性发布
+	private volatile int expanded;	// 是否已经有线程开始扩展本节点
+	private int[] candidates;		// 扩展时按分数从高到低排好的所有可下点，渐进扩展依次取用
+	private float[] priors;			// 可下点对应的先验概率
+	private volatile int width;		// 已经（或者正在）成为子节点的可下点个数
+	private int move = Gobang.NO_MOVE;	// 点的编码（x * 列数 + y）
+	private int who;			// 下这个点的一方
+	private double prior;		// 先验概率，PUCT等策略使用
+	private Gobang gobang;		// 五子棋，不保存棋盘的模式下只有根节点有
 	private Observation<int[][]> observation; // 行动后的描述
 	
 	public void addOneCount() {
-		this.n ++;
+		this.stats.addOneCount();
 	}
 	
 	public boolean hasChild() {
@@ -33,30 +44,151 @@ public class Node {
 	}
 	
 	public boolean isInitialization() {
-		return this.n == 0;
+		return this.stats.getN() == 0;
 	}
 
-	public void addChild(Node node) {
-		if (this.childs == null) {
-			this.childs = new ArrayList<>();
-		}
-		this.childs.add(node);
+	/**
+	 * 传播一次模拟的得分
+	 * @param value	本次得分
+	 */
+	public void update(double value) {
+		this.stats.update(value);
+	}
+	
+	/**
+	 * 传播多次模拟的总得分
+	 * @param sum	总得分
+	 * @param squares	得分平方和
+	 * @param count	模拟次数
+	 */
+	public void update(double sum, double squares, int count) {
+		this.stats.update(sum, squares, count);
+	}
+	
+	/**
+	 * 抢占扩展权，同一个节点只有一个线程能够扩展成功
+	 * @return	true 当前线程负责扩展
+	 */
+	public boolean tryExpand() {
+		return EXPANDED.compareAndSet(this, 0, 1);
+	}
+	
+	/**
+	 * 添加虚拟损失：线程经过该节点时先按输棋计入，让其它线程选择别的分支
+	 * @param count	虚拟损失次数
+	 */
+	public void addVirtualLoss(int count) {
+		this.stats.addVirtualLoss(count);
+	}
+	
+	public void removeVirtualLoss(int count) {
+		this.stats.removeVirtualLoss(count);
+	}
+	
+	/**
+	 * @return	模拟次数，包括还没有传播回来的虚拟损失
+	 */
+	public int getVirtualN() {
+		return this.stats.getN() + this.stats.getVirtualLoss();
+	}
+	
+	/**
+	 * 包括虚拟损失的平均分，虚拟损失按下子一方输棋计算（AI输为-1，玩家输为1）
+	 * @return	平均分
+	 */
+	public double getVirtualValue() {
+		int virtualLoss = this.stats.getVirtualLoss();
+		if (virtualLoss == 0)
+			return this.stats.getValue();
+		int n = this.stats.getN();
+		double loss = who() == Gobang.POINT_AI ? -1 : 1;
+		return (this.stats.getValue() * n + loss * virtualLoss) / (n + virtualLoss);
+	}
+	
+	/**
+	 * @return	得分平方和，包括虚拟损失（每次按1计算）
+	 */
+	public double getVirtualSquares() {
+		return this.stats.getSquares() + this.stats.getVirtualLoss();
+	}
+
+	public synchronized void addChild(Node node) {
+		List<Node> childs = this.childs == null ? new ArrayList<>() : new ArrayList<>(this.childs);
+		childs.add(node);
+		this.childs = childs;
+	}
+	
+	/**
+	 * 一次添加多个子节点，整体发布
+	 * @param nodes	子节点
+	 */
+	public synchronized void addChilds(List<Node> nodes) {
+		List<Node> childs = this.childs == null ? new ArrayList<>(nodes.size()) : new ArrayList<>(this.childs);
+		childs.addAll(nodes);
+		this.childs = childs;
+	}
+	
+	/**
+	 * 记录排好序的可下点，需要在发布子节点之前调用
+	 * @param candidates	按分数从高到低排好的所有可下点
+	 * @param priors		对应的先验概率
+	 * @param width			已经成为子节点的个数
+	 */
+	public void setCandidates(int[] candidates, float[] priors, int width) {
+		this.candidates = candidates;
+		this.priors = priors;
+		this.width = width;
+	}
+	
+	/**
+	 * 抢占渐进扩展：把宽度从from改成to，同一段可下点只有一个线程能够扩展成功
+	 * @return	true 当前线程负责把第from到to-1个可下点扩展成子节点
+	 */
+	public boolean tryWiden(int from, int to) {
+		return WIDTH.compareAndSet(this, from, to);
+	}
+	
+	public int[] getCandidates() {
+		return candidates;
+	}
+	
+	public float[] getPriors() {
+		return priors;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * @return	是否还有可下点没有成为子节点
+	 */
+	public boolean canWiden() {
+		int[] candidates = this.candidates;
+		return candidates != null && this.width < candidates.length;
 	}
 	
 	public void addChild() {
-		if (this.childs == null) {
-			this.childs = new ArrayList<>();
-		}
-		this.childs.add(new Node(this));
+		addChild(new Node(this));
 	}
 	
-	public Node(Node parent, Point point, Gobang gobang) {
+	public Node(Node parent, int move, int who, Gobang gobang) {
 		super();
 		this.parent = parent;
-		this.point = point;
+		this.move = move;
+		this.who = who;
 		this.gobang = gobang;
 	}
 
+	/**
+	 * 根节点
+	 * @param lastMove	对手最后下的点，没有则为 {@link Gobang#NO_MOVE}（AI先下）
+	 * @param gobang	当前棋盘
+	 */
+	public Node(int lastMove, Gobang gobang) {
+		this(null, lastMove, gobang.lastMover(lastMove), gobang);
+	}
+
 	public Node() {
 		
 	}
@@ -74,19 +206,27 @@ public class Node {
 	}
 
 	public int getN() {
-		return n;
+		return stats.getN();
 	}
 
 	public void setN(int n) {
-		this.n = n;
+		this.stats.setN(n);
 	}
 
 	public double getValue() {
-		return value;
+		return stats.getValue();
 	}
 
 	public void setValue(double value) {
-		this.value = value;
+		this.stats.setValue(value);
+	}
+
+	public NodeStats getStats() {
+		return stats;
+	}
+
+	public void setStats(NodeStats stats) {
+		this.stats = stats;
 	}
 
 	public List<Node> getChilds() {
@@ -97,12 +237,20 @@ public class Node {
 		this.childs = childs;
 	}
 
-	public Point getPoint() {
-		return point;
+	public int getMove() {
+		return move;
 	}
 
-	public void setPoint(Point point) {
-		this.point = point;
+	public void setMove(int move) {
+		this.move = move;
+	}
+
+	public double getPrior() {
+		return prior;
+	}
+
+	public void setPrior(double prior) {
+		this.prior = prior;
 	}
 
 	public Gobang getGobang() {
@@ -126,42 +274,54 @@ public class Node {
 	}
 	
 	public int who() {
-		return this.gobang.getBroad()[this.point.getX()][this.point.getY()];
+		return this.who;
 	}
 	
 	public Node copy() {
 		Node node = new Node();
 		node.childs = this.childs == null ? null : new ArrayList<>(this.childs);
-		node.gobang = (Gobang) this.gobang.copy();
+		node.gobang = this.gobang == null ? null : (Gobang) this.gobang.copy();
 		node.observation = this.observation;
 		node.parent = this.parent;
-		node.n = this.n;
-		node.value = this.value;
-		node.point = this.point;
+		node.stats = this.stats;
+		node.move = this.move;
+		node.who = this.who;
+		node.prior = this.prior;
+		node.candidates = this.candidates;
+		node.priors = this.priors;
+		node.width = this.width;
 		return node;
 	}
 	
 	public Node copySon() {
 		Node node = new Node();
 		node.childs = this.childs == null ? null : new ArrayList<>(this.childs);
-		node.gobang = (Gobang) this.gobang.copy();
+		node.gobang = this.gobang == null ? null : (Gobang) this.gobang.copy();
 		node.observation = this.observation;
 		node.parent = this;
-		node.n = this.n;
-		node.value = this.value;
-		node.point = this.point;
+		node.stats = this.stats;
+		node.move = this.move;
+		node.who = this.who;
+		node.prior = this.prior;
+		node.candidates = this.candidates;
+		node.priors = this.priors;
+		node.width = this.width;
 		return node;
 	}
 	
-	public Node copy(Point point) throws IllegalPointException {
+	public Node copy(int move) throws IllegalPointException {
 		Node node = new Node();
 		node.childs = this.childs == null ? null : new ArrayList<>(this.childs);
 		node.gobang = (Gobang) this.gobang.copy();
-		node.observation = node.gobang.action(point, this.who() == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI);
+		node.observation = node.gobang.action(move, this.who() == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI);
 		node.parent = this.parent;
-		node.n = this.n;
-		node.value = this.value;
-		node.point = this.point;
+		node.stats = this.stats;
+		node.move = this.move;
+		node.who = this.who;
+		node.prior = this.prior;
+		node.candidates = this.candidates;
+		node.priors = this.priors;
+		node.width = this.width;
 		return node;
 	}
 }
@@ -0,0 +1,128 @@
+package mcts.entity;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * 节点统计信息（模拟次数与分数）
+ *
+ * 单独成对象，是为了让置换表中相同局面的节点共享同一份统计。
+ * 所有更新都是无锁的原子操作，多个线程可以同时在同一棵树上搜索。
+ *
+ * @author Jervis
+ *
+ */
+public class NodeStats {
+
+	private static final AtomicIntegerFieldUpdater<NodeStats> N = AtomicIntegerFieldUpdater
+			.newUpdater(NodeStats.class, "n");
+	private static final AtomicIntegerFieldUpdater<NodeStats> VIRTUAL_LOSS = AtomicIntegerFieldUpdater
+			.newUpdater(NodeStats.class, "virtualLoss");
+	private static final AtomicLongFieldUpdater<NodeStats> SUM = AtomicLongFieldUpdater.newUpdater(NodeStats.class,
+			"sum");
+	private static final AtomicLongFieldUpdater<NodeStats> SQUARES = AtomicLongFieldUpdater
+			.newUpdater(NodeStats.class, "squares");
+
+	private final long key;				// 局面哈希，置换表中用来校验
+	private volatile int n;				// 模拟了多少次
+	private volatile long sum;			// 分数总和（double的位表示）
+	private volatile long squares;		// 分数平方和（double的位表示），UCB1-Tuned估计方差用
+	private volatile int virtualLoss;	// 正在经过该节点、还没有传播回来的线程数
+
+	public NodeStats() {
+		this(0);
+	}
+
+	public NodeStats(long key) {
+		this.key = key;
+	}
+
+	public void addOneCount() {
+		N.incrementAndGet(this);
+	}
+
+	/**
+	 * 传播一次模拟的得分：次数加一，总分累加
+	 *
+	 * @param value
+	 *            本次得分
+	 */
+	public void update(double value) {
+		N.incrementAndGet(this);
+		add(SUM, value);
+		add(SQUARES, value * value);
+	}
+
+	/**
+	 * 一次传播多次模拟的得分（叶并行批量模拟）
+	 *
+	 * @param sum
+	 *            总得分
+	 * @param squares
+	 *            得分平方和
+	 * @param count
+	 *            模拟次数
+	 */
+	public void update(double sum, double squares, int count) {
+		N.addAndGet(this, count);
+		add(SUM, sum);
+		add(SQUARES, squares);
+	}
+
+	private void add(AtomicLongFieldUpdater<NodeStats> field, double value) {
+		long current, next;
+		do {
+			current = field.get(this);
+			next = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + value);
+		} while (!field.compareAndSet(this, current, next));
+	}
+
+	public void addVirtualLoss(int count) {
+		VIRTUAL_LOSS.addAndGet(this, count);
+	}
+
+	public void removeVirtualLoss(int count) {
+		VIRTUAL_LOSS.addAndGet(this, -count);
+	}
+
+	public int getVirtualLoss() {
+		return virtualLoss;
+	}
+
+	public long getKey() {
+		return key;
+	}
+
+	public int getN() {
+		return n;
+	}
+
+	public void setN(int n) {
+		double value = getValue();
+		this.n = n;
+		setValue(value);
+	}
+
+	/**
+	 * @return 平均分
+	 */
+	public double getValue() {
+		int n = this.n;
+		return n == 0 ? 0 : Double.longBitsToDouble(this.sum) / n;
+	}
+
+	/**
+	 * @return 分数平方和
+	 */
+	public double getSquares() {
+		return Double.longBitsToDouble(this.squares);
+	}
+
+	/**
+	 * 设置平均分（按当前次数换算成总分）
+	 */
+	public void setValue(double value) {
+		this.sum = Double.doubleToRawLongBits(value * this.n);
+	}
+
+}
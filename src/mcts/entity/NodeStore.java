@@ -0,0 +1,262 @@
+package mcts.entity;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * 紧凑的搜索树存储（结构数组）
+ *
+ * 节点不再是对象，而是一个下标，父节点、第一个子节点、子节点个数、点、模拟次数、分数总和、分数平方和、先验概率、下子一方分别存放在并行的基本类型数组中。
+ * 同一个节点的子节点在扩展时一次性分配在连续的下标上，选择时顺序遍历，不需要追指针。
+ * 节点上不保存棋盘，搜索时在一个棋盘上沿路径下子、撤销（见 {@link GobangUCT#simulation(NodeStore, Gobang)}）。
+ * 每个节点占用 {@link #BYTES_PER_NODE} 字节，可以选择放在堆外内存。
+ *
+ * 一个存储只能被一个线程使用，不支持置换表与虚拟损失。
+ *
+ * @author Jervis
+ *
+ */
+public class NodeStore {
+
+	/**
+	 * 没有节点
+	 */
+	public static final int NONE = -1;
+	/**
+	 * 根节点的下标
+	 */
+	public static final int ROOT = 0;
+	/**
+	 * 每个节点占用的字节数：5个int、2个double、1个float、1个byte
+	 */
+	public static final int BYTES_PER_NODE = 5 * 4 + 2 * 8 + 4 + 1;
+
+	/**
+	 * 已经结束的节点（下完这一步就五连了）
+	 */
+	private static final int DONE = 0x10;
+	/**
+	 * 下子一方所在的位
+	 */
+	private static final int WHO_MASK = 0x0F;
+
+	private final int capacity;			// 最多多少个节点
+	private int size;					// 已经使用了多少个节点
+	private final IntBuffer parent;		// 父节点
+	private final IntBuffer firstChild;	// 第一个子节点，没有为NONE
+	private final IntBuffer childCount;	// 子节点个数
+	private final IntBuffer move;		// 点的编码
+	private final IntBuffer visits;		// 模拟了多少次
+	private final DoubleBuffer sum;		// 分数总和
+	private final DoubleBuffer squares;	// 分数平方和
+	private final FloatBuffer prior;	// 先验概率
+	private final ByteBuffer flags;		// 下子一方 | 是否结束
+
+	/**
+	 * @param capacity
+	 *            最多多少个节点
+	 */
+	public NodeStore(int capacity) {
+		this(capacity, false);
+	}
+
+	/**
+	 * @param capacity
+	 *            最多多少个节点
+	 * @param direct
+	 *            是否使用堆外内存
+	 */
+	public NodeStore(int capacity, boolean direct) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		this.parent = ints(capacity, direct);
+		this.firstChild = ints(capacity, direct);
+		this.childCount = ints(capacity, direct);
+		this.move = ints(capacity, direct);
+		this.visits = ints(capacity, direct);
+		this.sum = doubles(capacity, direct);
+		this.squares = doubles(capacity, direct);
+		this.prior = direct ? ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asFloatBuffer()
+				: FloatBuffer.allocate(capacity);
+		this.flags = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+	}
+
+	private static IntBuffer ints(int capacity, boolean direct) {
+		return direct ? ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer()
+				: IntBuffer.allocate(capacity);
+	}
+
+	private static DoubleBuffer doubles(int capacity, boolean direct) {
+		return direct ? ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer()
+				: DoubleBuffer.allocate(capacity);
+	}
+
+	/**
+	 * 清空存储，创建根节点
+	 *
+	 * @param lastMove
+	 *            对手最后下的点，没有则为 {@link Gobang#NO_MOVE}
+	 * @param who
+	 *            下这个点的一方
+	 * @return 根节点
+	 */
+	public int createRoot(int lastMove, int who) {
+		this.size = 1;
+		init(ROOT, NONE, lastMove, who, false, 1);
+		return ROOT;
+	}
+
+	/**
+	 * 给节点分配连续的子节点下标，子节点需要再用 {@link #initChild(int, int, int, int, boolean, float)} 初始化
+	 *
+	 * @param node
+	 *            父节点
+	 * @param count
+	 *            子节点个数
+	 * @return 第一个子节点，存储已满返回 {@link #NONE}
+	 */
+	public int allocateChildren(int node, int count) {
+		if (count > this.capacity - this.size)
+			return NONE;
+		int first = this.size;
+		this.size += count;
+		this.firstChild.put(node, first);
+		this.childCount.put(node, count);
+		return first;
+	}
+
+	/**
+	 * 初始化一个子节点
+	 *
+	 * @param child
+	 *            子节点
+	 * @param parent
+	 *            父节点
+	 * @param move
+	 *            点的编码
+	 * @param who
+	 *            下这个点的一方
+	 * @param done
+	 *            下完这个点是否结束
+	 * @param prior
+	 *            先验概率
+	 */
+	public void initChild(int child, int parent, int move, int who, boolean done, float prior) {
+		init(child, parent, move, who, done, prior);
+	}
+
+	private void init(int node, int parent, int move, int who, boolean done, float prior) {
+		this.parent.put(node, parent);
+		this.firstChild.put(node, NONE);
+		this.childCount.put(node, 0);
+		this.move.put(node, move);
+		this.visits.put(node, 0);
+		this.sum.put(node, 0);
+		this.squares.put(node, 0);
+		this.prior.put(node, prior);
+		this.flags.put(node, (byte) (who | (done ? DONE : 0)));
+	}
+
+	/**
+	 * 传播一次模拟的得分
+	 *
+	 * @param node
+	 *            节点
+	 * @param value
+	 *            本次得分
+	 */
+	public void update(int node, double value) {
+		this.visits.put(node, this.visits.get(node) + 1);
+		this.sum.put(node, this.sum.get(node) + value);
+		this.squares.put(node, this.squares.get(node) + value * value);
+	}
+
+	/**
+	 * 选择模拟次数最多的子节点，次数相同时取平均分高的（见 {@link SearchResult#getBest()}）
+	 *
+	 * @param node
+	 *            父节点
+	 * @return 模拟次数最多的子节点，没有子节点返回 {@link #NONE}
+	 */
+	public int bestChild(int node) {
+		int best = NONE;
+		int first = getFirstChild(node), end = first + getChildCount(node);
+		for (int child = first; child < end; child++) {
+			if (best == NONE || getN(child) > getN(best)
+					|| getN(child) == getN(best) && getValue(child) > getValue(best))
+				best = child;
+		}
+		return best;
+	}
+
+	public int getParent(int node) {
+		return this.parent.get(node);
+	}
+
+	public int getFirstChild(int node) {
+		return this.firstChild.get(node);
+	}
+
+	public int getChildCount(int node) {
+		return this.childCount.get(node);
+	}
+
+	public boolean hasChild(int node) {
+		return this.childCount.get(node) > 0;
+	}
+
+	public int getMove(int node) {
+		return this.move.get(node);
+	}
+
+	public int getN(int node) {
+		return this.visits.get(node);
+	}
+
+	/**
+	 * @return 平均分
+	 */
+	public double getValue(int node) {
+		int n = this.visits.get(node);
+		return n == 0 ? 0 : this.sum.get(node) / n;
+	}
+
+	/**
+	 * @return 分数平方和
+	 */
+	public double getSquares(int node) {
+		return this.squares.get(node);
+	}
+
+	public float getPrior(int node) {
+		return this.prior.get(node);
+	}
+
+	public int who(int node) {
+		return this.flags.get(node) & WHO_MASK;
+	}
+
+	public boolean isDone(int node) {
+		return (this.flags.get(node) & DONE) != 0;
+	}
+
+	/**
+	 * 已经使用的节点个数
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public boolean isFull() {
+		return this.size >= this.capacity;
+	}
+
+}
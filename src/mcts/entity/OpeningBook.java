@@ -0,0 +1,174 @@
+package mcts.entity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 开局库：按局面哈希查下一步
+ *
+ * 文件由 {@link OpeningBookBuilder} 生成，格式（大端）：
+ *
+ * <pre>
+ * 头：   int 魔数 {@link #MAGIC}，int 版本，int 行数，int 列数，int 条目数
+ * 条目： long 局面哈希，int 点的编码，int 下过的次数，float 平均得分（下这一步的一方：胜1、和0.5、负0）
+ * </pre>
+ *
+ * 条目按哈希从小到大排序，同一局面的条目相邻。局面哈希是轮到下子的一方作为AI时的规范哈希 {@link Gobang#getCanonicalHash()}，
+ * 与引擎（总是AI下）的视角相同；点是规范局面上的点（{@link Gobang#toCanonical(int)}），查到后换回当前局面上的点。
+ * 互相对称的局面共用条目，开局库的大小因此小了接近8倍。
+ *
+ * 文件只读映射到内存，打开时不读内容，查询是内存映射上的二分查找，打开和查询的开销都与开局库大小无关（对数）。
+ * 映射是只读的，多个线程可以同时查询。
+ *
+ * @author Jervis
+ *
+ */
+public class OpeningBook {
+
+	/**
+	 * 魔数 "GBK1"
+	 */
+	public static final int MAGIC = 0x47424B31;
+	/**
+	 * 文件格式版本
+	 */
+	public static final int VERSION = 2;
+	/**
+	 * 头的字节数
+	 */
+	public static final int HEADER_BYTES = 5 * 4;
+	/**
+	 * 每个条目的字节数
+	 */
+	public static final int ENTRY_BYTES = 8 + 4 + 4 + 4;
+	/**
+	 * 默认最少下过几次的点才使用
+	 */
+	public static final int MIN_COUNT = 3;
+
+	private final ByteBuffer buffer;
+	private final int row;
+	private final int col;
+	private final int size;
+	/**
+	 * 最少下过几次的点才使用，次数少的点统计不可靠
+	 */
+	private int minCount = MIN_COUNT;
+
+	private OpeningBook(ByteBuffer buffer) throws IOException {
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+			throw new IOException("not an opening book");
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("unsupported opening book version " + buffer.getInt(4));
+		this.buffer = buffer;
+		this.row = buffer.getInt(8);
+		this.col = buffer.getInt(12);
+		this.size = buffer.getInt(16);
+		if ((long) this.size * ENTRY_BYTES + HEADER_BYTES != buffer.capacity())
+			throw new IOException("truncated opening book");
+	}
+
+	/**
+	 * 只读映射开局库文件
+	 *
+	 * @param path
+	 *            文件路径
+	 * @return 开局库
+	 * @throws IOException
+	 *             文件不存在或者格式不对
+	 */
+	public static OpeningBook open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// 关闭通道后映射仍然有效
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new OpeningBook(buffer);
+		}
+	}
+
+	/**
+	 * 查当前局面（轮到AI下）的下一步：下过次数最多的点，次数相同时平均得分高的优先
+	 *
+	 * @param position
+	 *            当前局面
+	 * @return 点的编码，开局库中没有（或者棋盘大小不同、哈希冲突得到的点已经有子）返回 {@link Gobang#NO_MOVE}
+	 */
+	public int probe(Gobang position) {
+		if (position.getRow() != this.row || position.getCol() != this.col)
+			return Gobang.NO_MOVE;
+		long key = position.getCanonicalHash();
+		int best = Gobang.NO_MOVE, bestCount = 0;
+		float bestScore = 0;
+		for (int i = first(key); i < this.size && key(i) == key; i++) {
+			int move = position.fromCanonical(this.buffer.getInt(offset(i) + 8)), count = count(i);
+			float score = score(i);
+			if (count >= this.minCount && position.isIllegal(move)
+					&& (count > bestCount || count == bestCount && score > bestScore)) {
+				best = move;
+				bestCount = count;
+				bestScore = score;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * 二分查找哈希为key的第一个条目
+	 *
+	 * @return 下标，没有时是第一个哈希大于key的条目
+	 */
+	private int first(long key) {
+		int low = 0, high = this.size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (key(mid) < key)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private static int offset(int index) {
+		return HEADER_BYTES + index * ENTRY_BYTES;
+	}
+
+	private long key(int index) {
+		return this.buffer.getLong(offset(index));
+	}
+
+	private int count(int index) {
+		return this.buffer.getInt(offset(index) + 12);
+	}
+
+	private float score(int index) {
+		return this.buffer.getFloat(offset(index) + 16);
+	}
+
+	public int getRow() {
+		return row;
+	}
+
+	public int getCol() {
+		return col;
+	}
+
+	/**
+	 * @return 条目数
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getMinCount() {
+		return minCount;
+	}
+
+	public void setMinCount(int minCount) {
+		this.minCount = minCount;
+	}
+
+}
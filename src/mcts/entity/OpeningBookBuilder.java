@@ -0,0 +1,225 @@
+package mcts.entity;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 开局库生成：读入对局记录（自我对弈或者导入的棋谱），统计每个局面前若干步的下法，写成 {@link OpeningBook} 的文件
+ *
+ * 对局记录是文本文件，每行一局：
+ *
+ * <pre>
+ * 结果 x,y x,y ...
+ * </pre>
+ *
+ * 结果为1表示先手胜，2表示后手胜，0表示和棋；之后是双方轮流下的点，x为行，y为列，从0开始。
+ * {@link mcts.arena.Arena} 可以把自我对弈的对局写成这种格式，其它来源的棋谱转换成这种格式后也可以导入。
+ *
+ * @author Jervis
+ *
+ */
+public class OpeningBookBuilder {
+
+	/**
+	 * 默认只统计每局的前多少步
+	 */
+	public static final int MAX_PLY = 12;
+
+	private final int row;
+	private final int col;
+	/**
+	 * 只统计每局的前多少步
+	 */
+	private final int maxPly;
+	/**
+	 * 局面哈希 → (点的编码 → {下过的次数, 得分之和 × 2})
+	 */
+	private final Map<Long, Map<Integer, long[]>> positions = new HashMap<>();
+	/**
+	 * 读入的对局数
+	 */
+	private int games;
+
+	/**
+	 * @param row
+	 *            行数
+	 * @param col
+	 *            列数
+	 * @param maxPly
+	 *            只统计每局的前多少步
+	 */
+	public OpeningBookBuilder(int row, int col, int maxPly) {
+		this.row = row;
+		this.col = col;
+		this.maxPly = maxPly;
+	}
+
+	/**
+	 * 加入一局
+	 *
+	 * 每一步的局面从下这一步的一方看（自己的子是AI），两个视角各一个棋盘；局面用规范哈希，点也换到规范局面上，
+	 * 互相对称的局面和下法合并统计
+	 *
+	 * @param moves
+	 *            双方轮流下的点的编码（x * 列数 + y），先手先下
+	 * @param winner
+	 *            0先手胜，1后手胜，-1和棋
+	 */
+	public void addGame(int[] moves, int winner) {
+		// boards[i]：第i方（0先手，1后手）作为AI时的局面
+		Gobang[] boards = { Gobang.newGobang(this.row, this.col), Gobang.newGobang(this.row, this.col) };
+		for (int ply = 0; ply < Math.min(moves.length, this.maxPly); ply++) {
+			int side = ply % 2, move = moves[ply], x = move / this.col, y = move % this.col;
+			Gobang board = boards[side];
+			long[] stats = this.positions.computeIfAbsent(board.getCanonicalHash(), key -> new HashMap<>())
+					.computeIfAbsent(board.toCanonical(move), key -> new long[2]);
+			stats[0]++;
+			stats[1] += winner < 0 ? 1 : winner == side ? 2 : 0;
+			board.make(x, y, Gobang.POINT_AI);
+			boards[1 - side].make(x, y, Gobang.POINT_PLAYER);
+		}
+		this.games++;
+	}
+
+	/**
+	 * 读入对局记录文件，空行和 # 开头的行忽略
+	 *
+	 * @param path
+	 *            对局记录文件
+	 * @throws IOException
+	 *             读文件失败或者格式不对
+	 */
+	public void addGames(Path path) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			int number = 0;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				try {
+					String[] tokens = line.split("\\s+");
+					int[] moves = new int[tokens.length - 1];
+					for (int i = 1; i < tokens.length; i++) {
+						String[] xy = tokens[i].split(",");
+						int x = Integer.parseInt(xy[0]), y = Integer.parseInt(xy[1]);
+						if (x < 0 || x >= this.row || y < 0 || y >= this.col)
+							throw new IOException("point out of board: " + tokens[i]);
+						moves[i - 1] = x * this.col + y;
+					}
+					int result = Integer.parseInt(tokens[0]);
+					addGame(moves, result == 1 ? 0 : result == 2 ? 1 : -1);
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					throw new IOException(path + ":" + number + ": bad game record: " + line, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 一局的记录行，与 {@link #addGames(Path)} 读入的格式相同
+	 *
+	 * @param moves
+	 *            双方轮流下的点的编码
+	 * @param col
+	 *            列数
+	 * @param winner
+	 *            0先手胜，1后手胜，-1和棋
+	 * @return 不带换行的一行
+	 */
+	public static String format(int[] moves, int col, int winner) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(winner == 0 ? 1 : winner == 1 ? 2 : 0);
+		for (int move : moves)
+			sb.append(' ').append(move / col).append(',').append(move % col);
+		return sb.toString();
+	}
+
+	/**
+	 * 写出开局库文件，按哈希排序
+	 *
+	 * @param path
+	 *            输出文件
+	 * @param minCount
+	 *            下过的次数少于这个值的条目不写
+	 * @return 写出的条目数
+	 * @throws IOException
+	 *             写文件失败
+	 */
+	public int write(Path path, int minCount) throws IOException {
+		List<Long> keys = new ArrayList<>(this.positions.keySet());
+		keys.sort(Long::compare);
+		List<long[]> entries = new ArrayList<>();
+		for (long key : keys) {
+			for (Map.Entry<Integer, long[]> move : this.positions.get(key).entrySet()) {
+				long[] stats = move.getValue();
+				if (stats[0] >= minCount)
+					entries.add(new long[] { key, move.getKey(), stats[0], stats[1] });
+			}
+		}
+		try (OutputStream file = Files.newOutputStream(path);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+			out.writeInt(OpeningBook.MAGIC);
+			out.writeInt(OpeningBook.VERSION);
+			out.writeInt(this.row);
+			out.writeInt(this.col);
+			out.writeInt(entries.size());
+			for (long[] entry : entries) {
+				out.writeLong(entry[0]);
+				out.writeInt((int) entry[1]);
+				out.writeInt((int) Math.min(Integer.MAX_VALUE, entry[2]));
+				out.writeFloat((float) (entry[3] / 2.0 / entry[2]));
+			}
+		}
+		return entries.size();
+	}
+
+	public int getGames() {
+		return games;
+	}
+
+	/**
+	 * 命令行：
+	 *
+	 * <pre>
+	 * java mcts.entity.OpeningBookBuilder 输出文件 对局记录文件... [size=15] [plies=12] [min=3]
+	 * </pre>
+	 */
+	public static void main(String[] args) throws IOException {
+		int size = 15, plies = MAX_PLY, minCount = OpeningBook.MIN_COUNT;
+		List<Path> inputs = new ArrayList<>();
+		Path output = null;
+		for (String arg : args) {
+			if (arg.startsWith("size="))
+				size = Integer.parseInt(arg.substring(5));
+			else if (arg.startsWith("plies="))
+				plies = Integer.parseInt(arg.substring(6));
+			else if (arg.startsWith("min="))
+				minCount = Integer.parseInt(arg.substring(4));
+			else if (output == null)
+				output = Paths.get(arg);
+			else
+				inputs.add(Paths.get(arg));
+		}
+		if (output == null || inputs.isEmpty())
+			throw new IllegalArgumentException("usage: OpeningBookBuilder book games... [size=15] [plies=12] [min=3]");
+		OpeningBookBuilder builder = new OpeningBookBuilder(size, size, plies);
+		for (Path input : inputs)
+			builder.addGames(input);
+		int entries = builder.write(output, minCount);
+		System.out.printf("games=%d positions=%d entries=%d%n", builder.getGames(), builder.positions.size(), entries);
+	}
+
+}
@@ -0,0 +1,213 @@
+package mcts.entity;
+
+/**
+ * 增量形势判断
+ *
+ * 把棋盘拆成横、竖、两条斜线四个方向的所有直线，每条线单独计分并保存，总分为所有线得分之和。
+ * 下子或者撤销之后，只需要重新计算经过这个点的四条线。
+ *
+ * 每条线上的棋型用 {@link PatternTable} 查表识别，按 {@link Gobang} 原来的常量给分：
+ * 1. AI或玩家已有的棋型：活三、冲四、活四、五连，每个棋型只在最左边的子上计一次；
+ * 2. 玩家的下一步：对每个空点，查玩家在这里下子之后的棋型，能成活三、冲四、活四、五连的按"玩家下一步"对应常量给分。
+ * 跳三、跳四这类断开的棋型同样计分，两端被挡住、已经不可能成五的"三"不再计分。
+ * 为了保证"总分是否为0"的判断准确，得分使用整数（常量 × {@link #SCALE}）累加。
+ *
+ * @author Jervis
+ *
+ */
+public class PatternEvaluator {
+
+	/**
+	 * 得分放大倍数，把常量换算成整数
+	 */
+	public static final int SCALE = 100;
+
+	/**
+	 * 线外的点
+	 */
+	static final int OUTSIDE = 3;
+	/**
+	 * 窗口中心点的得分：窗口9个点每个点2位（0空 1AI 2玩家 3线外），最左边的点在最低位，
+	 * 由 {@link PatternTable} 的双方视角查表结果换算而来，扫描一条线时每个点只查一次表
+	 */
+	private static final short[] SCORES = new short[1 << 2 * PatternTable.WINDOW];
+
+	static {
+		int[] ai = scores(0, 0, 0, Gobang.AI_THREE, Gobang.AI_FOUR_BETWEEN, Gobang.AI_FOUR_NO_BETWEEN,
+				Gobang.AI_FIVE);
+		int[] player = scores(0, 0, 0, Gobang.PLAYER_THREE, Gobang.PLAYER_FOUR_BETWEEN,
+				Gobang.PLAYER_FOUR_NO_BETWEEN, Gobang.PLAYER_FIVE);
+		// 玩家在空点下子之后能形成的棋型
+		int[] playerNext = scores(0, 0, 0, Gobang.PLAYER_NEXT_THREE, Gobang.PLAYER_NEXT_FOUR_BETWEEN,
+				Gobang.PLAYER_FOUR_NO_BETWEEN, Gobang.PLAYER_FIVE);
+		for (int code = 0; code < SCORES.length; code++) {
+			int center = (code >>> 2 * PatternTable.HALF) & 3;
+			if (center == OUTSIDE)
+				continue;
+			int aiCode = 0, playerCode = 0;
+			for (int k = PatternTable.WINDOW - 1; k >= 0; k--) {
+				int value = (code >>> 2 * k) & 3;
+				aiCode = aiCode * 3 + (value == OUTSIDE ? PatternTable.BLOCKED : PatternTable.digit(value, Gobang.POINT_AI));
+				playerCode = playerCode * 3
+						+ (value == OUTSIDE ? PatternTable.BLOCKED : PatternTable.digit(value, Gobang.POINT_PLAYER));
+			}
+			int score;
+			if (center == Gobang.POINT_AI)
+				score = countScore(ai, PatternTable.lookup(aiCode));
+			else if (center == Gobang.POINT_PLAYER)
+				score = countScore(player, PatternTable.lookup(playerCode));
+			else
+				score = playerNext[PatternTable.type(playerCode + PatternTable.CENTER)];
+			SCORES[code] = (short) score;
+		}
+	}
+
+	private final int row;
+	private final int col;
+	/**
+	 * 每个方向每条线的得分，[方向][线编号]
+	 */
+	private final int[][] lineScores;
+	/**
+	 * 总分
+	 */
+	private int total;
+	/**
+	 * 取出一条线时使用的缓冲区，两端各留 {@link PatternTable#HALF} 个线外的点
+	 */
+	private final int[] line;
+
+	/**
+	 * @param broad
+	 *            二维数组棋盘
+	 */
+	public PatternEvaluator(int[][] broad) {
+		this.row = broad.length;
+		this.col = broad[0].length;
+		int diagonals = this.row + this.col - 1;
+		this.lineScores = new int[][] { new int[this.row], new int[this.col], new int[diagonals],
+				new int[diagonals] };
+		this.line = new int[Math.max(this.row, this.col) + 2 * PatternTable.HALF];
+		rebuild(broad);
+	}
+
+	/**
+	 * 重新计算所有线的得分
+	 *
+	 * @param broad
+	 *            二维数组棋盘
+	 */
+	public void rebuild(int[][] broad) {
+		this.total = 0;
+		for (int x = 0; x < this.row; x++)
+			this.total += this.lineScores[0][x] = scoreLine(broad, 0, x, 0);
+		for (int y = 0; y < this.col; y++)
+			this.total += this.lineScores[1][y] = scoreLine(broad, 1, 0, y);
+		for (int x = 0; x < this.row; x++) {
+			this.total += this.lineScores[2][x + this.col - 1] = scoreLine(broad, 2, x, 0);
+			this.total += this.lineScores[3][x + this.col - 1] = scoreLine(broad, 3, x, this.col - 1);
+		}
+		for (int y = 1; y < this.col; y++) {
+			this.total += this.lineScores[2][this.col - 1 - y] = scoreLine(broad, 2, 0, y);
+			this.total += this.lineScores[3][y - 1] = scoreLine(broad, 3, 0, y - 1);
+		}
+	}
+
+	/**
+	 * 点(x, y)发生变化（下子或者撤销）之后，重新计算经过它的四条线
+	 *
+	 * @param broad
+	 *            二维数组棋盘
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
+	 */
+	public void update(int[][] broad, int x, int y) {
+		update(0, x, broad, x, 0);
+		update(1, y, broad, 0, y);
+		int d = Math.min(x, y);
+		update(2, x - y + this.col - 1, broad, x - d, y - d);
+		d = Math.min(x, this.col - 1 - y);
+		update(3, x + y, broad, x - d, y + d);
+	}
+
+	private void update(int direction, int index, int[][] broad, int startX, int startY) {
+		int score = scoreLine(broad, direction, startX, startY);
+		this.total += score - this.lineScores[direction][index];
+		this.lineScores[direction][index] = score;
+	}
+
+	/**
+	 * @return 总分（整数，常量 × {@link #SCALE}）
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return 总分，与 {@link Gobang#formalJudgment()} 的得分一致
+	 */
+	public double getValue() {
+		return (double) this.total / SCALE;
+	}
+
+	/**
+	 * 计算一条线的得分
+	 *
+	 * @param direction
+	 *            0横 1竖 2主对角线 3副对角线
+	 * @param x
+	 *            线的起点x
+	 * @param y
+	 *            线的起点y
+	 */
+	private int scoreLine(int[][] broad, int direction, int x, int y) {
+		int dx = direction == 0 ? 0 : 1, dy = direction == 1 ? 0 : direction == 3 ? -1 : 1;
+		int length = PatternTable.HALF;
+		for (int i = 0; i < PatternTable.HALF; i++)
+			this.line[i] = OUTSIDE;
+		for (int i = x, j = y; i >= 0 && i < this.row && j >= 0 && j < this.col; i += dx, j += dy)
+			this.line[length++] = broad[i][j];
+		for (int i = 0; i < PatternTable.HALF; i++)
+			this.line[length++] = OUTSIDE;
+		return scoreLine(this.line, length - 2 * PatternTable.HALF);
+	}
+
+	/**
+	 * 计算一条线的得分：窗口每前进一格滚动一次编码，每个点查一次表
+	 *
+	 * @param cells
+	 *            线上每个点的值，两端各有 {@link PatternTable#HALF} 个线外的点
+	 * @param length
+	 *            线的长度（不含两端线外的点）
+	 * @return 得分
+	 */
+	static int scoreLine(int[] cells, int length) {
+		int shift = 2 * (PatternTable.WINDOW - 1);
+		int code = 0;
+		for (int i = 0; i < PatternTable.WINDOW - 1; i++)
+			code = (code >>> 2) | (cells[i] << shift);
+		int score = 0;
+		for (int i = 0; i < length; i++) {
+			code = (code >>> 2) | (cells[i + PatternTable.WINDOW - 1] << shift);
+			score += SCORES[code];
+		}
+		return score;
+	}
+
+	/**
+	 * 已有棋型只在最左边的子上计分
+	 */
+	private static int countScore(int[] scores, int entry) {
+		return (entry & PatternTable.LEFTMOST) == 0 ? 0 : scores[entry & PatternTable.TYPE_MASK];
+	}
+
+	private static int[] scores(double... values) {
+		int[] scores = new int[values.length];
+		for (int i = 0; i < values.length; i++)
+			scores[i] = (int) Math.round(values[i] * SCALE);
+		return scores;
+	}
+
+}
@@ -0,0 +1,232 @@
+package mcts.entity;
+
+import java.util.Arrays;
+
+/**
+ * 棋型查找表
+ *
+ * 以某个点为中心，取一条线上前后各4个点共9个点作为窗口，从一方的视角把每个点编码成一位三进制数：
+ * 0空 1己方 2对方或者棋盘外，最左边的点是最低位。3^9 = 19683种窗口在类加载时穷举一次，
+ * 得到中心这个己方子所在的棋型，之后形势判断只需要查表，不再逐个点分支判断。
+ * 因为是按"再下一步能否成五/活四"来定义棋型，跳三（X_XX）、跳四（XX_XX）这类断开的棋型也能识别。
+ *
+ * 表中每一项：低4位为棋型，{@link #LEFTMOST} 位表示中心是这个棋型最左边的己方子，
+ * 一条线上的同一个棋型只在最左边的子上计一次。
+ *
+ * @author Jervis
+ *
+ */
+public final class PatternTable {
+
+	public static final int NONE = 0;			// 没有棋型
+	public static final int OPEN_TWO = 1;		// 活二：再下一步可以成活三
+	public static final int THREE = 2;			// 眠三：再下一步可以成冲四
+	public static final int OPEN_THREE = 3;		// 活三：再下一步可以成活四
+	public static final int FOUR = 4;			// 冲四：只有一个成五点
+	public static final int OPEN_FOUR = 5;		// 活四：有两个以上成五点
+	public static final int FIVE = 6;			// 五连（包括长连）
+	/**
+	 * 棋型个数
+	 */
+	public static final int CLASSES = 7;
+
+	/**
+	 * 中心点是这个棋型最左边的己方子
+	 */
+	public static final int LEFTMOST = 0x10;
+	/**
+	 * 查表结果中棋型所在的位
+	 */
+	public static final int TYPE_MASK = 0xF;
+
+	public static final int EMPTY = 0;		// 空
+	public static final int OWN = 1;		// 己方
+	public static final int BLOCKED = 2;	// 对方或者棋盘外
+
+	/**
+	 * 中心往一边取几个点
+	 */
+	public static final int HALF = 4;
+	/**
+	 * 窗口长度
+	 */
+	public static final int WINDOW = HALF * 2 + 1;
+	/**
+	 * 中心点所在位的权重，空的中心加上它就是"在中心下一子"之后的窗口
+	 */
+	public static final int CENTER = 81;
+	/**
+	 * 最高位的权重，窗口右移一格时新进入的点乘以它
+	 */
+	public static final int HIGHEST = 6561;
+	/**
+	 * 窗口种数
+	 */
+	public static final int SIZE = HIGHEST * 3;
+
+	private static final byte[] TABLE = new byte[SIZE];
+
+	static {
+		int[] types = new int[SIZE];
+		Arrays.fill(types, -1);
+		int[] cells = new int[WINDOW];
+		for (int code = 0; code < SIZE; code++) {
+			decode(code, cells);
+			if (cells[HALF] == OWN) {
+				int type = classify(code, cells, types);
+				TABLE[code] = (byte) (type | (type != NONE && isLeftmost(cells, type) ? LEFTMOST : 0));
+			}
+		}
+	}
+
+	private PatternTable() {
+	}
+
+	/**
+	 * @param code
+	 *            窗口编码
+	 * @return 中心己方子所在的棋型，中心不是己方子时为 {@link #NONE}
+	 */
+	public static int type(int code) {
+		return TABLE[code] & TYPE_MASK;
+	}
+
+	/**
+	 * @param code
+	 *            窗口编码
+	 * @return 查表得到的原始值（棋型 | {@link #LEFTMOST}）
+	 */
+	public static int lookup(int code) {
+		return TABLE[code];
+	}
+
+	/**
+	 * 棋盘上一个点的一位编码
+	 *
+	 * @param value
+	 *            棋盘上的值
+	 * @param who
+	 *            从哪一方的视角
+	 */
+	public static int digit(int value, int who) {
+		return value == Gobang.POINT_INITAL ? EMPTY : value == who ? OWN : BLOCKED;
+	}
+
+	/**
+	 * 取棋盘上以(x, y)为中心、方向为(dx, dy)的窗口编码
+	 *
+	 * @param broad
+	 *            二维数组棋盘
+	 * @param who
+	 *            从哪一方的视角
+	 * @return 窗口编码
+	 */
+	public static int encode(int[][] broad, int x, int y, int dx, int dy, int who) {
+		int code = 0;
+		for (int k = HALF, i = x + dx * k, j = y + dy * k; k >= -HALF; k--, i -= dx, j -= dy) {
+			int cell = i < 0 || j < 0 || i >= broad.length || j >= broad[0].length ? BLOCKED : digit(broad[i][j], who);
+			code = code * 3 + cell;
+		}
+		return code;
+	}
+
+	private static void decode(int code, int[] cells) {
+		for (int i = 0; i < WINDOW; i++, code /= 3)
+			cells[i] = code % 3;
+	}
+
+	/**
+	 * 穷举判断中心己方子的棋型，结果按窗口编码缓存在types中
+	 */
+	private static int classify(int code, int[] cells, int[] types) {
+		if (types[code] >= 0)
+			return types[code];
+		int type;
+		int points = fivePoints(cells);
+		if (run(cells) >= 5)
+			type = FIVE;
+		else if (points >= 2)
+			type = OPEN_FOUR;
+		else if (points == 1)
+			type = FOUR;
+		else {
+			type = NONE;
+			for (int i = 0, weight = 1; i < WINDOW && type < OPEN_THREE; i++, weight *= 3) {
+				if (cells[i] != EMPTY)
+					continue;
+				cells[i] = OWN;
+				int next = classify(code + weight, cells, types);
+				cells[i] = EMPTY;
+				if (next >= OPEN_FOUR)
+					type = OPEN_THREE;
+				else if (next == FOUR)
+					type = Math.max(type, THREE);
+				else if (next == OPEN_THREE)
+					type = Math.max(type, OPEN_TWO);
+			}
+		}
+		return types[code] = type;
+	}
+
+	/**
+	 * @return 经过中心的己方连子数
+	 */
+	private static int run(int[] cells) {
+		int first = HALF, last = HALF;
+		while (first > 0 && cells[first - 1] == OWN)
+			first--;
+		while (last < WINDOW - 1 && cells[last + 1] == OWN)
+			last++;
+		return last - first + 1;
+	}
+
+	/**
+	 * @return 下一子就能和中心连成五的空点个数
+	 */
+	private static int fivePoints(int[] cells) {
+		int points = 0;
+		for (int i = 0; i < WINDOW; i++) {
+			if (cells[i] != EMPTY)
+				continue;
+			cells[i] = OWN;
+			if (run(cells) >= 5)
+				points++;
+			cells[i] = EMPTY;
+		}
+		return points;
+	}
+
+	/**
+	 * 中心是否为这个棋型最左边的己方子：五连看连子，其它棋型看包含中心、没有对方子、己方子最多的五格，
+	 * 只要有一个这样的五格以中心为最左边的己方子即可
+	 */
+	private static boolean isLeftmost(int[] cells, int type) {
+		if (type == FIVE)
+			return cells[HALF - 1] != OWN;
+		int most = 0;
+		boolean leftmost = false;
+		for (int start = 0; start <= HALF; start++) {
+			int count = 0;
+			boolean blocked = false, first = true;
+			for (int i = start; i < start + 5; i++) {
+				if (cells[i] == BLOCKED)
+					blocked = true;
+				else if (cells[i] == OWN) {
+					if (i < HALF)
+						first = false;
+					count++;
+				}
+			}
+			if (blocked)
+				continue;
+			if (count > most) {
+				most = count;
+				leftmost = first;
+			} else if (count == most) {
+				leftmost |= first;
+			}
+		}
+		return leftmost;
+	}
+
+}
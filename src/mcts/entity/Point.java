@@ -1,11 +1,12 @@
 package mcts.entity;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 
  * 点对象
+ * 搜索内部统一使用int编码的点（x * 列数 + y），点对象只在界面等外部接口上与编码互相转换
  * @author Jervis
  *
  */
@@ -13,19 +14,42 @@ public class Point {
 
 	private int x;	// 横坐标
 	private int y; 	// 纵坐标
-	// 所有点的map，key为'x,y'，value为point对象
-	private static Map<String, Point> map = new HashMap<>();
+	// 所有点的map，key为'x,y'，value为point对象（多线程搜索会同时访问，使用线程安全的map）
+	private static Map<String, Point> map = new ConcurrentHashMap<>();
 	
 	// 每次创建点，都从map中找一边，如果有就直接返回，如果没有则创建并且放到map中（实现单例对象）
 	public static Point newInstance(int x, int y) {
-		Point point = map.get(x + "," + y);
+		String key = x + "," + y;
+		Point point = map.get(key);
 		if (point == null) {
 			point = new Point(x, y);
-			map.put(x + "," + y, point);
+			Point old = map.putIfAbsent(key, point);
+			if (old != null) {
+				point = old;
+			}
 		}
 		return point;
 	}
 	
+	/**
+	 * 由点的编码得到点对象
+	 * @param move	点的编码（x * 列数 + y）
+	 * @param col	棋盘列数
+	 * @return	点对象
+	 */
+	public static Point fromMove(int move, int col) {
+		return newInstance(move / col, move % col);
+	}
+	
+	/**
+	 * 点的编码
+	 * @param col	棋盘列数
+	 * @return	x * 列数 + y
+	 */
+	public int toMove(int col) {
+		return this.x * col + this.y;
+	}
+	
 	private Point(int x, int y) {
 		this.x = x;
 		this.y = y;
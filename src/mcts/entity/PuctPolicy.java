@@ -0,0 +1,56 @@
+package mcts.entity;
+
+import mcts.abs.TreePolicy;
+
+/**
+ * PUCT：平均分 + C * 先验概率 * sqrt(父节点模拟次数) / (1 + 模拟次数)
+ *
+ * 没有模拟过的子节点不直接选择，而是按先验概率打分（平均分按0计算），先验概率高的点先被访问。
+ *
+ * @author Jervis
+ *
+ */
+public class PuctPolicy implements TreePolicy {
+
+	/**
+	 * 默认探索常数
+	 */
+	public static final double C_PUCT = 1.5;
+
+	/**
+	 * 探索常数
+	 */
+	private final double c;
+
+	public PuctPolicy() {
+		this(C_PUCT);
+	}
+
+	/**
+	 * @param c
+	 *            探索常数
+	 */
+	public PuctPolicy(double c) {
+		this.c = c;
+	}
+
+	@Override
+	public double prepare(int parentN) {
+		return Math.sqrt(Math.max(1, parentN));
+	}
+
+	@Override
+	public double score(double value, double squares, int n, double prior, double parent) {
+		return value + this.c * prior * parent / (1 + n);
+	}
+
+	@Override
+	public boolean visitUnvisitedFirst() {
+		return false;
+	}
+
+	public double getC() {
+		return c;
+	}
+
+}
@@ -0,0 +1,197 @@
+package mcts.entity;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import mcts.abs.RolloutBoard;
+
+/**
+ * 模拟对局引擎
+ *
+ * 在一个可变的草稿棋盘上用下子/撤销（make/unmake）完成整局随机对局，走法缓冲区预先分配，
+ * 模拟过程中不创建任何对象。草稿棋盘可以是 {@link Gobang}，也可以是位棋盘 {@link BitGobang}（见 {@link #bits(Gobang)}），
+ * 两者规则相同。一个引擎只能被一个线程使用，{@link GobangUCT} 每个线程持有一个。
+ *
+ * @author Jervis
+ *
+ */
+public class RolloutEngine {
+
+	/**
+	 * 没有截止时间
+	 */
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+	/**
+	 * 模拟到截止时间被中止时的得分，用 {@link Double#isNaN(double)} 判断，不应该被传播
+	 */
+	public static final double ABORTED = Double.NaN;
+	/**
+	 * 每下多少步检查一次截止时间
+	 */
+	private static final int DEADLINE_CHECK_MASK = 15;
+
+	/**
+	 * 草稿棋盘，棋盘大小变化时重新创建
+	 */
+	private Gobang board;
+	/**
+	 * 草稿棋盘当前对应的局面，见 {@link #board(Gobang)}，为null表示草稿棋盘被模拟对局占用过
+	 */
+	private Gobang source;
+	/**
+	 * 装入时局面的哈希
+	 */
+	private long sourceHash;
+	/**
+	 * 位棋盘的草稿棋盘，第一次需要时创建，棋盘大小变化时重新创建
+	 */
+	private BitGobang bits;
+	/**
+	 * 位棋盘当前对应的局面和装入时的哈希，见 {@link #bits(Gobang)}
+	 */
+	private Gobang bitsSource;
+	private long bitsSourceHash;
+	/**
+	 * 本局模拟下过的点（x * col + y），用于撤销
+	 */
+	private int[] moves;
+	/**
+	 * 本局模拟下了多少步
+	 */
+	private int count;
+
+	/**
+	 * 从指定局面开始随机对局，双方轮流在增量维护的可下点集合中随机下子，规则与原来的模拟一致：
+	 * 开始先做一次形势判断，之后每次AI下完没有结束就做一次形势判断，判断有结果或者五连就结束
+	 *
+	 * @param gobang
+	 *            开始局面（不会被修改）
+	 * @param who
+	 *            开始局面最后下子的一方
+	 * @return 模拟对局的得分
+	 */
+	public double rollout(Gobang gobang, int who) {
+		prepare(gobang);
+		return play(this.board, who);
+	}
+
+	/**
+	 * 直接在给定的棋盘上随机对局，规则与 {@link #rollout(Gobang, int)} 一致，结束后撤销所有下子，棋盘回到开始局面。
+	 * 不需要复制开始局面，棋盘只能被当前线程使用（例如沿路径下子搜索的棋盘）
+	 *
+	 * @param board
+	 *            开始局面，对局过程中会被修改，返回时复原
+	 * @param who
+	 *            开始局面最后下子的一方
+	 * @return 模拟对局的得分
+	 */
+	public double play(RolloutBoard board, int who) {
+		return play(board, who, NO_DEADLINE);
+	}
+
+	/**
+	 * 直接在给定的棋盘上随机对局，到了截止时间还没有结束则中止，返回 {@link #ABORTED}
+	 *
+	 * @param board
+	 *            开始局面，对局过程中会被修改，返回时复原
+	 * @param who
+	 *            开始局面最后下子的一方
+	 * @param deadline
+	 *            截止时刻（System.nanoTime()），{@link #NO_DEADLINE} 表示没有
+	 * @return 模拟对局的得分，中止返回 {@link #ABORTED}
+	 */
+	public double play(RolloutBoard board, int who, long deadline) {
+		int cells = board.getRow() * board.getCol();
+		if (this.moves == null || this.moves.length < cells)
+			this.moves = new int[cells];
+		this.count = 0;
+		try {
+			// 第一次进来直接运行形势判断
+			double value = board.judgmentValue();
+			int col = board.getCol();
+			// 如果形势判断已经有结果 则 直接不进行模拟
+			while (value == Gobang.NORMAL_WINNER_REWARD) {
+				int size = board.candidateCount();
+				// 棋盘已经下满，按和棋处理
+				if (size == 0)
+					return Gobang.NORMAL_WINNER_REWARD;
+				// 超过截止时间则中止，不为了一局模拟超时
+				if ((this.count & DEADLINE_CHECK_MASK) == DEADLINE_CHECK_MASK && deadline != NO_DEADLINE
+						&& System.nanoTime() - deadline > 0)
+					return ABORTED;
+				who = who == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
+				int move = board.candidateAt(ThreadLocalRandom.current().nextInt(size));
+				this.moves[this.count++] = move;
+				if (board.make(move / col, move % col, who))
+					return who == Gobang.POINT_AI ? Gobang.AI_FIVE : Gobang.PLAYER_FIVE;
+				// 如果当前下的子是AI同时没有结束，则进行棋盘的形势判断
+				if (who == Gobang.POINT_AI)
+					value = board.judgmentValue();
+			}
+			return value;
+		} finally {
+			undo(board);
+		}
+	}
+
+	/**
+	 * 取放在指定局面上的草稿棋盘。连续对同一个局面（同一个对象并且哈希没有变化）调用不会重新装入，
+	 * 调用方在草稿棋盘上下的子，必须在下一次使用这个引擎之前全部撤销
+	 *
+	 * @param gobang
+	 *            局面（不会被修改）
+	 * @return 草稿棋盘
+	 */
+	Gobang board(Gobang gobang) {
+		if (this.source != gobang || this.sourceHash != gobang.getHash()) {
+			prepare(gobang);
+			this.source = gobang;
+			this.sourceHash = gobang.getHash();
+		}
+		return this.board;
+	}
+
+	/**
+	 * 取放在指定局面上的位棋盘草稿棋盘，与 {@link #board(Gobang)} 一样，连续对同一个局面调用不会重新装入，
+	 * 调用方在上面下的子必须在下一次使用这个引擎之前全部撤销
+	 *
+	 * @param gobang
+	 *            局面（不会被修改）
+	 * @return 位棋盘草稿棋盘
+	 */
+	BitGobang bits(Gobang gobang) {
+		if (this.bits == null || this.bits.getRow() != gobang.getRow() || this.bits.getCol() != gobang.getCol()) {
+			this.bits = new BitGobang(gobang.getRow(), gobang.getCol());
+			this.bitsSource = null;
+		}
+		if (this.bitsSource != gobang || this.bitsSourceHash != gobang.getHash()) {
+			this.bits.load(gobang);
+			this.bitsSource = gobang;
+			this.bitsSourceHash = gobang.getHash();
+		}
+		return this.bits;
+	}
+
+	/**
+	 * 把开始局面装入草稿棋盘
+	 */
+	private void prepare(Gobang gobang) {
+		this.source = null;
+		if (this.board == null || this.board.getRow() != gobang.getRow() || this.board.getCol() != gobang.getCol()) {
+			this.board = (Gobang) gobang.copy();
+		} else {
+			this.board.load(gobang);
+		}
+	}
+
+	/**
+	 * 撤销本局模拟的所有下子，棋盘回到开始局面
+	 */
+	private void undo(RolloutBoard board) {
+		int col = board.getCol();
+		while (this.count > 0) {
+			int move = this.moves[--this.count];
+			board.unmake(move / col, move % col);
+		}
+	}
+
+}
@@ -0,0 +1,329 @@
+package mcts.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mcts.abs.TreePolicy;
+import mcts.exception.IllegalPointException;
+
+/**
+ * 根并行搜索
+ *
+ * N个线程从同一个根局面各自建一棵树，线程之间没有任何共享的可变状态（各自的棋盘、节点、置换表）。
+ * 时间到了之后，把各棵树根节点子节点的模拟次数与分数按点合并，再选择下法。
+ *
+ * @author Jervis
+ *
+ */
+public class RootParallelUCT {
+
+	/**
+	 * 线程数
+	 */
+	private final int threads;
+	/**
+	 * 每个线程置换表的大小，0表示不使用置换表
+	 */
+	private final int transpositionSize;
+	/**
+	 * 每个线程紧凑存储的节点数，0表示使用节点对象建树
+	 */
+	private final int storeCapacity;
+	/**
+	 * 每个线程的紧凑存储，第一次搜索时创建，之后每次搜索复用
+	 */
+	private final NodeStore[] stores;
+	/**
+	 * 搜索线程池
+	 */
+	private final ExecutorService executor;
+	/**
+	 * 每个线程选择子节点的树策略（策略没有状态，线程之间共用）
+	 */
+	private TreePolicy treePolicy = new Ucb1Policy(GobangUCT.C);
+
+	/**
+	 * @param threads
+	 *            线程数
+	 * @param transpositionSize
+	 *            每个线程置换表的大小，0表示不使用置换表
+	 */
+	public RootParallelUCT(int threads, int transpositionSize) {
+		this(threads, transpositionSize, 0);
+	}
+
+	/**
+	 * @param threads
+	 *            线程数
+	 * @param transpositionSize
+	 *            每个线程置换表的大小，0表示不使用置换表（使用紧凑存储时忽略）
+	 * @param storeCapacity
+	 *            每个线程紧凑存储 {@link NodeStore} 的节点数，0表示使用节点对象建树
+	 */
+	public RootParallelUCT(int threads, int transpositionSize, int storeCapacity) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		this.threads = threads;
+		this.transpositionSize = transpositionSize;
+		this.storeCapacity = storeCapacity;
+		this.stores = new NodeStore[threads];
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "uct-root-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * 搜索
+	 *
+	 * @param gobang
+	 *            当前棋盘（不会被修改）
+	 * @param lastMove
+	 *            对手最后下的点，没有则为 {@link Gobang#NO_MOVE}
+	 * @param millis
+	 *            搜索多少毫秒
+	 * @return 合并后的结果
+	 */
+	public Result search(Gobang gobang, int lastMove, long millis) {
+		long start = System.currentTimeMillis();
+		long deadline = System.nanoTime() + millis * 1000000;
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < this.threads; i++) {
+			Gobang copy = (Gobang) gobang.copy();
+			int thread = i;
+			futures.add(this.storeCapacity > 0 ? this.executor.submit(() -> searchStore(thread, copy, lastMove, deadline))
+					: this.executor.submit(() -> searchTree(copy, lastMove, deadline)));
+		}
+		Result result = new Result(this.threads, gobang.getRow() * gobang.getCol(), gobang.getCol());
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				Object tree = futures.get(i).get();
+				if (tree instanceof NodeStore)
+					result.merge(i, (NodeStore) tree);
+				else
+					result.merge(i, (Node) tree);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+		result.elapsed = System.currentTimeMillis() - start;
+		return result;
+	}
+
+	/**
+	 * 单个线程建一棵树，一直模拟到截止时刻（System.nanoTime()），模拟对局超过截止时刻会被中止
+	 */
+	private Node searchTree(Gobang gobang, int lastMove, long deadline) throws IllegalPointException {
+		GobangUCT gobangUCT = new GobangUCT(
+				this.transpositionSize > 0 ? new TranspositionTable(this.transpositionSize) : null, 0, true);
+		gobangUCT.setTreePolicy(this.treePolicy);
+		gobangUCT.setDeadline(deadline);
+		Node root = new Node(lastMove, gobang);
+		gobangUCT.expansion(root);
+		if (!root.hasChild())
+			return root;
+		while (System.nanoTime() - deadline < 0)
+			gobangUCT.simulation(root);
+		return root;
+	}
+
+	/**
+	 * 单个线程在自己的紧凑存储上建一棵树，一直模拟到截止时间
+	 */
+	private NodeStore searchStore(int thread, Gobang gobang, int lastMove, long deadline) {
+		if (this.stores[thread] == null)
+			this.stores[thread] = new NodeStore(this.storeCapacity);
+		NodeStore store = this.stores[thread];
+		GobangUCT gobangUCT = new GobangUCT();
+		gobangUCT.setTreePolicy(this.treePolicy);
+		gobangUCT.setDeadline(deadline);
+		gobangUCT.expansion(store, store.createRoot(lastMove, gobang.lastMover(lastMove)), gobang);
+		if (!store.hasChild(NodeStore.ROOT))
+			return store;
+		while (System.nanoTime() - deadline < 0)
+			gobangUCT.simulation(store, gobang);
+		return store;
+	}
+
+	/**
+	 * 关闭线程池
+	 */
+	public void shutdown() {
+		this.executor.shutdownNow();
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public TreePolicy getTreePolicy() {
+		return treePolicy;
+	}
+
+	/**
+	 * 更换树策略，下一次搜索开始生效
+	 *
+	 * @param treePolicy
+	 *            树策略
+	 */
+	public void setTreePolicy(TreePolicy treePolicy) {
+		this.treePolicy = treePolicy;
+	}
+
+	/**
+	 * 合并后的搜索结果
+	 */
+	public static class Result {
+
+		/**
+		 * 每个点合并后的模拟次数，下标为点的编码
+		 */
+		private final double[] n;
+		/**
+		 * 每个点合并后的分数总和
+		 */
+		private final double[] sum;
+		/**
+		 * 点是否出现过
+		 */
+		private final boolean[] seen;
+		/**
+		 * 出现过的点，按第一次出现的顺序
+		 */
+		private final int[] moves;
+		/**
+		 * 出现过的点的个数
+		 */
+		private int size;
+		/**
+		 * 棋盘列数，报告时把编码转换成坐标
+		 */
+		private final int col;
+		/**
+		 * 每个线程的模拟次数
+		 */
+		private final long[] simulations;
+		/**
+		 * 实际用时，毫秒
+		 */
+		private long elapsed;
+
+		private Result(int threads, int cells, int col) {
+			this.simulations = new long[threads];
+			this.n = new double[cells];
+			this.sum = new double[cells];
+			this.seen = new boolean[cells];
+			this.moves = new int[cells];
+			this.col = col;
+		}
+
+		private void merge(int thread, Node root) {
+			this.simulations[thread] = root.getN();
+			if (!root.hasChild())
+				return;
+			for (Node child : root.getChilds()) {
+				int move = child.getMove();
+				if (!this.seen[move]) {
+					this.seen[move] = true;
+					this.moves[this.size++] = move;
+				}
+				this.n[move] += child.getN();
+				this.sum[move] += child.getValue() * child.getN();
+			}
+		}
+
+		private void merge(int thread, NodeStore store) {
+			this.simulations[thread] = store.getN(NodeStore.ROOT);
+			for (int child = store.getFirstChild(NodeStore.ROOT), end = child
+					+ store.getChildCount(NodeStore.ROOT); child < end; child++) {
+				int move = store.getMove(child);
+				if (!this.seen[move]) {
+					this.seen[move] = true;
+					this.moves[this.size++] = move;
+				}
+				this.n[move] += store.getN(child);
+				this.sum[move] += store.getValue(child) * store.getN(child);
+			}
+		}
+
+		/**
+		 * 选择合并后模拟次数最多的点，次数相同时取平均分高的（与 {@link SearchResult#getBest()} 一致）
+		 *
+		 * @return 最好的点的编码，没有可下点返回 {@link Gobang#NO_MOVE}
+		 */
+		public int getBest() {
+			int best = Gobang.NO_MOVE;
+			for (int i = 0; i < this.size; i++) {
+				int move = this.moves[i];
+				if (best == Gobang.NO_MOVE || getN(move) > getN(best)
+						|| getN(move) == getN(best) && getValue(move) > getValue(best))
+					best = move;
+			}
+			return best;
+		}
+
+		/**
+		 * 某个点合并后的模拟次数
+		 */
+		public long getN(int move) {
+			return (long) this.n[move];
+		}
+
+		/**
+		 * 某个点合并后的平均分
+		 */
+		public double getValue(int move) {
+			return this.n[move] == 0 ? 0 : this.sum[move] / this.n[move];
+		}
+
+		/**
+		 * 所有线程的模拟总次数
+		 */
+		public long getSimulations() {
+			long total = 0;
+			for (long simulation : this.simulations)
+				total += simulation;
+			return total;
+		}
+
+		public long getElapsed() {
+			return elapsed;
+		}
+
+		/**
+		 * 合并报告：线程数、每线程模拟次数、每秒模拟次数、模拟次数最多的几个点
+		 *
+		 * @return 报告文本
+		 */
+		public String report() {
+			StringBuilder sb = new StringBuilder();
+			long total = getSimulations();
+			sb.append(String.format("threads=%d simulations=%d elapsed=%dms playouts/s=%.0f%n", this.simulations.length,
+					total, this.elapsed, this.elapsed == 0 ? 0.0 : total * 1000.0 / this.elapsed));
+			for (int i = 0; i < this.simulations.length; i++) {
+				sb.append(String.format("  thread %d: %d%n", i, this.simulations[i]));
+			}
+			List<Integer> moves = new ArrayList<>(this.size);
+			for (int i = 0; i < this.size; i++)
+				moves.add(this.moves[i]);
+			moves.sort((move1, move2) -> Long.compare(getN(move2), getN(move1)));
+			int best = getBest();
+			for (int i = 0; i < Math.min(5, moves.size()); i++) {
+				int move = moves.get(i);
+				sb.append(String.format("  %s n=%d value=%.4f%s%n", Point.fromMove(move, this.col), getN(move),
+						getValue(move), move == best ? " *" : ""));
+			}
+			return sb.toString();
+		}
+
+	}
+
+}
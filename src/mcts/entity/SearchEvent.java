@@ -0,0 +1,103 @@
+package mcts.entity;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 一次搜索的JFR事件，持续时间为整个搜索，字段与 {@link SearchStats} 相同
+ *
+ * 用 -XX:StartFlightRecording 或者 jcmd JFR.start 录制，在 JDK Mission Control 中按 "Gobang / Search" 分类查看。
+ * 需要 JDK 8u262 以上（或者 11 以上）的 jdk.jfr，没有时 {@link SearchMetrics} 不会用到这个类。
+ *
+ * @author Jervis
+ *
+ */
+@Name("mcts.Search")
+@Label("UCT Search")
+@Category({ "Gobang", "Search" })
+@Description("One tree-parallel UCT search")
+class SearchEvent extends Event {
+
+	@Label("Threads")
+	int threads;
+
+	@Label("Simulations")
+	long simulations;
+
+	@Label("Nodes Expanded")
+	long nodesExpanded;
+
+	@Label("Max Depth")
+	int maxDepth;
+
+	@Label("Average Depth")
+	double averageDepth;
+
+	@Label("Playouts Per Second")
+	double playoutsPerSecond;
+
+	@Label("Selection Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long selection;
+
+	@Label("Expansion Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long expansion;
+
+	@Label("Playout Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long playout;
+
+	@Label("Back Propagation Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long backPropagation;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+
+	@Label("Principal Variation")
+	String principalVariation;
+
+	/**
+	 * 搜索开始
+	 *
+	 * @return 已经开始计时的事件
+	 */
+	static SearchEvent started() {
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * 搜索结束，填上统计并提交；没有在录制时什么也不做
+	 *
+	 * @param stats
+	 *            搜索统计
+	 */
+	void commit(SearchStats stats) {
+		end();
+		if (!shouldCommit())
+			return;
+		this.threads = stats.getThreads();
+		this.simulations = stats.getSimulations();
+		this.nodesExpanded = stats.getNodesExpanded();
+		this.maxDepth = stats.getMaxDepth();
+		this.averageDepth = stats.getAverageDepth();
+		this.playoutsPerSecond = stats.getPlayoutsPerSecond();
+		this.selection = stats.getSelectionNanos();
+		this.expansion = stats.getExpansionNanos();
+		this.playout = stats.getPlayoutNanos();
+		this.backPropagation = stats.getBackPropagationNanos();
+		this.allocated = stats.getAllocatedBytes();
+		this.principalVariation = stats.getPrincipalVariation();
+		commit();
+	}
+
+}
@@ -0,0 +1,206 @@
+package mcts.entity;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import mcts.abs.SearchMetricsMXBean;
+
+/**
+ * 搜索统计的发布：保存最近一次搜索的 {@link SearchStats} 和所有搜索的累计，注册为JMX MBean，并提交JFR事件
+ *
+ * 进程中只有一个实例，第一次使用时注册到平台 MBeanServer。程序中可以直接用 {@link #getLast()} 取得最近一次的统计。
+ *
+ * @author Jervis
+ *
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+
+	/**
+	 * MBean的注册名
+	 */
+	public static final String OBJECT_NAME = "mcts:type=SearchMetrics";
+
+	/**
+	 * 运行的JVM是否有 jdk.jfr（JDK 8u262 以上）
+	 */
+	private static final boolean JFR = jfrAvailable();
+
+	private static final SearchMetrics INSTANCE = register(new SearchMetrics());
+
+	private volatile SearchStats last;
+	private final AtomicLong searches = new AtomicLong();
+	private final AtomicLong simulations = new AtomicLong();
+	private final AtomicLong nodesExpanded = new AtomicLong();
+	private final AtomicLong elapsed = new AtomicLong();
+	private final AtomicLong allocatedBytes = new AtomicLong();
+
+	private SearchMetrics() {
+	}
+
+	/**
+	 * @return 唯一的实例
+	 */
+	public static SearchMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	private static SearchMetrics register(SearchMetrics metrics) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+		} catch (JMException | SecurityException e) {
+			e.printStackTrace();
+		}
+		return metrics;
+	}
+
+	private static boolean jfrAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 一次搜索开始
+	 *
+	 * @return 已经开始计时的JFR事件，没有 jdk.jfr 时为null，传给 {@link #record(SearchStats, Object)}
+	 */
+	Object begin() {
+		return JFR ? SearchEvent.started() : null;
+	}
+
+	/**
+	 * 一次搜索结束：成为最近一次的统计，加入累计，提交JFR事件
+	 *
+	 * @param stats
+	 *            已经结束的搜索统计
+	 * @param event
+	 *            {@link #begin()} 返回的事件
+	 */
+	void record(SearchStats stats, Object event) {
+		this.last = stats;
+		this.searches.incrementAndGet();
+		this.simulations.addAndGet(stats.getSimulations());
+		this.nodesExpanded.addAndGet(stats.getNodesExpanded());
+		this.elapsed.addAndGet(stats.getElapsed());
+		this.allocatedBytes.addAndGet(stats.getAllocatedBytes());
+		if (event != null)
+			((SearchEvent) event).commit(stats);
+	}
+
+	/**
+	 * @return 最近一次搜索的统计，还没有搜索过时为null
+	 */
+	public SearchStats getLast() {
+		return last;
+	}
+
+	@Override
+	public long getSearches() {
+		return this.searches.get();
+	}
+
+	@Override
+	public long getTotalSimulations() {
+		return this.simulations.get();
+	}
+
+	@Override
+	public long getTotalNodesExpanded() {
+		return this.nodesExpanded.get();
+	}
+
+	@Override
+	public long getTotalElapsedMillis() {
+		return this.elapsed.get();
+	}
+
+	@Override
+	public long getTotalAllocatedBytes() {
+		return this.allocatedBytes.get();
+	}
+
+	@Override
+	public int getLastThreads() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getThreads();
+	}
+
+	@Override
+	public long getLastSimulations() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getSimulations();
+	}
+
+	@Override
+	public long getLastNodesExpanded() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getNodesExpanded();
+	}
+
+	@Override
+	public int getLastMaxDepth() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getMaxDepth();
+	}
+
+	@Override
+	public double getLastAverageDepth() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getAverageDepth();
+	}
+
+	@Override
+	public long getLastElapsedMillis() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getElapsed();
+	}
+
+	@Override
+	public double getLastPlayoutsPerSecond() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getPlayoutsPerSecond();
+	}
+
+	@Override
+	public double getLastSelectionMillis() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getSelectionNanos() / 1e6;
+	}
+
+	@Override
+	public double getLastExpansionMillis() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getExpansionNanos() / 1e6;
+	}
+
+	@Override
+	public double getLastPlayoutMillis() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getPlayoutNanos() / 1e6;
+	}
+
+	@Override
+	public double getLastBackPropagationMillis() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getBackPropagationNanos() / 1e6;
+	}
+
+	@Override
+	public long getLastAllocatedBytes() {
+		SearchStats last = this.last;
+		return last == null ? 0 : last.getAllocatedBytes();
+	}
+
+	@Override
+	public String getLastPrincipalVariation() {
+		SearchStats last = this.last;
+		return last == null ? "" : last.getPrincipalVariation();
+	}
+
+}
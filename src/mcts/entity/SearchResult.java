@@ -0,0 +1,118 @@
+package mcts.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 共享一棵树的搜索结果（树并行、叶并行）
+ *
+ * @author Jervis
+ *
+ */
+public class SearchResult {
+
+	/**
+	 * 根节点
+	 */
+	private final Node root;
+	/**
+	 * 每个线程的模拟次数
+	 */
+	private final long[] simulations;
+	/**
+	 * 实际用时，毫秒
+	 */
+	private long elapsed;
+	/**
+	 * 搜索统计，没有记录时为null
+	 */
+	private SearchStats stats;
+
+	public SearchResult(Node root, int threads) {
+		this.root = root;
+		this.simulations = new long[threads];
+	}
+
+	/**
+	 * 选择模拟次数最多的子节点，次数相同时取平均分高的
+	 *
+	 * 不直接比较平均分：渐进扩展后加入的子节点只有一两次模拟时平均分很不稳定，可能偶然高过模拟了几千次的子节点
+	 *
+	 * @return 最好的点的编码，没有可下点返回 {@link Gobang#NO_MOVE}
+	 */
+	public int getBest() {
+		Node best = null;
+		if (this.root.hasChild()) {
+			for (Node child : this.root.getChilds()) {
+				if (best == null || child.getN() > best.getN()
+						|| child.getN() == best.getN() && child.getValue() > best.getValue())
+					best = child;
+			}
+		}
+		return best == null ? Gobang.NO_MOVE : best.getMove();
+	}
+
+	public Node getRoot() {
+		return root;
+	}
+
+	/**
+	 * 所有线程的模拟总次数
+	 */
+	public long getSimulations() {
+		long total = 0;
+		for (long simulation : this.simulations)
+			total += simulation;
+		return total;
+	}
+
+	public void setSimulations(int thread, long simulations) {
+		this.simulations[thread] = simulations;
+	}
+
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	public void setElapsed(long elapsed) {
+		this.elapsed = elapsed;
+	}
+
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * 报告：线程数、每线程模拟次数、每秒模拟次数、搜索统计、模拟次数最多的几个点
+	 *
+	 * @return 报告文本
+	 */
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		long total = getSimulations();
+		sb.append(String.format("threads=%d simulations=%d elapsed=%dms playouts/s=%.0f%n", this.simulations.length,
+				total, this.elapsed, this.elapsed == 0 ? 0.0 : total * 1000.0 / this.elapsed));
+		for (int i = 0; i < this.simulations.length; i++) {
+			sb.append(String.format("  thread %d: %d%n", i, this.simulations[i]));
+		}
+		if (this.stats != null) {
+			sb.append("  ").append(this.stats).append(String.format("%n"));
+		}
+		if (this.root.hasChild()) {
+			List<Node> childs = new ArrayList<>(this.root.getChilds());
+			childs.sort((node1, node2) -> Integer.compare(node2.getN(), node1.getN()));
+			int best = getBest(), col = this.root.getGobang().getCol();
+			for (int i = 0; i < Math.min(5, childs.size()); i++) {
+				Node child = childs.get(i);
+				sb.append(String.format("  %s n=%d value=%.4f%s%n", Point.fromMove(child.getMove(), col), child.getN(),
+						child.getValue(), child.getMove() == best ? " *" : ""));
+			}
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,222 @@
+package mcts.entity;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次搜索的统计：模拟次数、扩展出的节点数、选择深度、选择/扩展/模拟对局/传播四个阶段的用时、主要变化和分配的内存
+ *
+ * 搜索线程通过 {@link GobangUCT#setStats(SearchStats)} 同时记录，计数器都是无锁的（LongAdder），
+ * 搜索结束后由 {@link TreeParallelUCT} 填上用时和主要变化，发布到 {@link SearchMetrics} 和JFR事件，之后不再改变。
+ *
+ * @author Jervis
+ *
+ */
+public class SearchStats {
+
+	/**
+	 * 主要变化最多记录多少步
+	 */
+	public static final int PV_LENGTH = 10;
+
+	/**
+	 * 支持按线程统计分配内存的 ThreadMXBean（HotSpot），不支持时为null
+	 */
+	private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+	private final int threads;
+	private final LongAdder simulations = new LongAdder();
+	private final LongAdder nodesExpanded = new LongAdder();
+	private final LongAdder depthSum = new LongAdder();
+	private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+	private final LongAdder selectionNanos = new LongAdder();
+	private final LongAdder expansionNanos = new LongAdder();
+	private final LongAdder playoutNanos = new LongAdder();
+	private final LongAdder backPropagationNanos = new LongAdder();
+	private final AtomicLong allocatedBytes = new AtomicLong();
+	/**
+	 * 实际用时，毫秒
+	 */
+	private volatile long elapsed;
+	/**
+	 * 主要变化：从根节点开始每一步都走模拟次数最多的子节点
+	 */
+	private volatile String principalVariation = "";
+
+	/**
+	 * @param threads
+	 *            搜索线程数
+	 */
+	public SearchStats(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * 记录一次完整的模拟
+	 *
+	 * @param depth
+	 *            选择到的叶节点的深度（根节点的子节点为1）
+	 * @param selection
+	 *            选择用时，纳秒
+	 * @param expansion
+	 *            扩展用时，纳秒
+	 * @param playout
+	 *            模拟对局用时，纳秒
+	 * @param backPropagation
+	 *            传播用时，纳秒
+	 */
+	void recordSimulation(int depth, long selection, long expansion, long playout, long backPropagation) {
+		this.simulations.increment();
+		this.depthSum.add(depth);
+		this.maxDepth.accumulate(depth);
+		this.selectionNanos.add(selection);
+		this.expansionNanos.add(expansion);
+		this.playoutNanos.add(playout);
+		this.backPropagationNanos.add(backPropagation);
+	}
+
+	/**
+	 * 记录扩展出的节点
+	 *
+	 * @param nodes
+	 *            新建的子节点个数
+	 */
+	void addNodes(int nodes) {
+		this.nodesExpanded.add(nodes);
+	}
+
+	/**
+	 * 记录一个线程在搜索中分配的内存
+	 *
+	 * @param bytes
+	 *            字节数
+	 */
+	void addAllocatedBytes(long bytes) {
+		this.allocatedBytes.addAndGet(bytes);
+	}
+
+	/**
+	 * 搜索结束：记录用时和主要变化
+	 *
+	 * @param root
+	 *            根节点，必须有棋盘
+	 * @param elapsed
+	 *            实际用时，毫秒
+	 */
+	void finish(Node root, long elapsed) {
+		this.elapsed = elapsed;
+		StringBuilder sb = new StringBuilder();
+		int col = root.getGobang().getCol();
+		Node node = root;
+		for (int i = 0; i < PV_LENGTH && node.hasChild(); i++) {
+			Node most = null;
+			for (Node child : node.getChilds()) {
+				if (most == null || child.getN() > most.getN())
+					most = child;
+			}
+			if (most.getN() == 0)
+				break;
+			sb.append(sb.length() == 0 ? "" : " ").append(Point.fromMove(most.getMove(), col));
+			node = most;
+		}
+		this.principalVariation = sb.toString();
+	}
+
+	/**
+	 * @return 当前线程到现在为止分配的内存，字节；JVM不支持时返回-1
+	 */
+	static long threadAllocatedBytes() {
+		return ALLOCATION == null ? -1 : ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return null;
+		com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) bean;
+		if (!allocation.isThreadAllocatedMemorySupported())
+			return null;
+		allocation.setThreadAllocatedMemoryEnabled(true);
+		return allocation;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public long getSimulations() {
+		return this.simulations.sum();
+	}
+
+	public long getNodesExpanded() {
+		return this.nodesExpanded.sum();
+	}
+
+	public int getMaxDepth() {
+		return (int) this.maxDepth.get();
+	}
+
+	/**
+	 * @return 平均选择深度
+	 */
+	public double getAverageDepth() {
+		long simulations = getSimulations();
+		return simulations == 0 ? 0 : (double) this.depthSum.sum() / simulations;
+	}
+
+	public long getSelectionNanos() {
+		return this.selectionNanos.sum();
+	}
+
+	public long getExpansionNanos() {
+		return this.expansionNanos.sum();
+	}
+
+	public long getPlayoutNanos() {
+		return this.playoutNanos.sum();
+	}
+
+	public long getBackPropagationNanos() {
+		return this.backPropagationNanos.sum();
+	}
+
+	/**
+	 * @return 搜索线程分配的内存，字节；JVM不支持按线程统计时为0
+	 */
+	public long getAllocatedBytes() {
+		return this.allocatedBytes.get();
+	}
+
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * @return 每秒模拟次数
+	 */
+	public double getPlayoutsPerSecond() {
+		return this.elapsed == 0 ? 0 : getSimulations() * 1000.0 / this.elapsed;
+	}
+
+	/**
+	 * @return 主要变化，例如 "[7, 8] [8, 8] [6, 7]"
+	 */
+	public String getPrincipalVariation() {
+		return principalVariation;
+	}
+
+	@Override
+	public String toString() {
+		double total = Math.max(1, getSelectionNanos() + getExpansionNanos() + getPlayoutNanos()
+				+ getBackPropagationNanos());
+		return String.format(
+				"simulations=%d nodes=%d depth=%.1f/%d select=%.0f%% expand=%.0f%% playout=%.0f%% backup=%.0f%% allocated=%.1fMB pv=%s",
+				getSimulations(), getNodesExpanded(), getAverageDepth(), getMaxDepth(),
+				getSelectionNanos() * 100 / total, getExpansionNanos() * 100 / total, getPlayoutNanos() * 100 / total,
+				getBackPropagationNanos() * 100 / total, getAllocatedBytes() / 1048576.0, this.principalVariation);
+	}
+
+}
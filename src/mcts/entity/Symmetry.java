@@ -0,0 +1,183 @@
+package mcts.entity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 棋盘的对称变换（二面体群）：方形棋盘8个（旋转、翻转），长方形棋盘4个（不交换行列的那几个）
+ *
+ * 变换的编号：0不变，1旋转180度，2左右翻转，3上下翻转，4沿主对角线翻转，5沿副对角线翻转，6顺时针旋转90度，7逆时针旋转90度。
+ * 前4个对长方形棋盘也成立。
+ *
+ * 每个棋盘大小一个实例（缓存），预先算好每个点在每个变换下的位置，以及变换后位置的 {@link Zobrist} 随机数，
+ * {@link Gobang} 下子时用它同时增量更新所有变换后局面的哈希，所有哈希中最小的一个就是与对称无关的规范哈希。
+ *
+ * @author Jervis
+ *
+ */
+public final class Symmetry {
+
+	/**
+	 * 变换个数的上限（方形棋盘）
+	 */
+	public static final int COUNT = 8;
+
+	/**
+	 * 每个棋盘大小一个实例，key：行数 * {@link Zobrist#MAX_SIZE} + 列数
+	 */
+	private static final Map<Integer, Symmetry> CACHE = new ConcurrentHashMap<>();
+
+	private final int row;
+	private final int col;
+	/**
+	 * 这个棋盘大小有几个变换
+	 */
+	private final int count;
+	/**
+	 * 变换后的点，下标 变换 * 点数 + 点
+	 */
+	private final int[] cells;
+	/**
+	 * 每个变换的逆变换
+	 */
+	private final int[] inverse = new int[COUNT];
+	/**
+	 * 变换后位置的随机数，下标 (下子方 * 点数 + 点) * {@link #COUNT} + 变换，同一个子的所有变换相邻
+	 */
+	private final long[] keys;
+
+	private Symmetry(int row, int col) {
+		this.row = row;
+		this.col = col;
+		this.count = row == col ? COUNT : COUNT / 2;
+		int size = row * col;
+		this.cells = new int[this.count * size];
+		for (int s = 0; s < this.count; s++) {
+			for (int x = 0; x < row; x++) {
+				for (int y = 0; y < col; y++) {
+					this.cells[s * size + x * col + y] = map(s, x, y);
+				}
+			}
+		}
+		for (int s = 0; s < this.count; s++) {
+			for (int t = 0; t < this.count; t++) {
+				boolean identity = true;
+				for (int cell = 0; cell < size && identity; cell++) {
+					identity = transform(t, transform(s, cell)) == cell;
+				}
+				if (identity) {
+					this.inverse[s] = t;
+					break;
+				}
+			}
+		}
+		this.keys = new long[3 * size * COUNT];
+		for (int who = Gobang.POINT_AI; who <= Gobang.POINT_PLAYER; who++) {
+			for (int cell = 0; cell < size; cell++) {
+				for (int s = 0; s < this.count; s++) {
+					int moved = transform(s, cell);
+					this.keys[(who * size + cell) * COUNT + s] = Zobrist.key(who, moved / col, moved % col);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 取得棋盘大小对应的实例
+	 *
+	 * @param row
+	 *            行数
+	 * @param col
+	 *            列数
+	 * @return 共享的实例
+	 */
+	public static Symmetry of(int row, int col) {
+		return CACHE.computeIfAbsent(row * Zobrist.MAX_SIZE + col, key -> new Symmetry(row, col));
+	}
+
+	/**
+	 * 点(x, y)在第s个变换下的位置
+	 */
+	private int map(int s, int x, int y) {
+		int mx = this.row - 1 - x, my = this.col - 1 - y;
+		switch (s) {
+		case 0:
+			return x * this.col + y;
+		case 1:
+			return mx * this.col + my;
+		case 2:
+			return x * this.col + my;
+		case 3:
+			return mx * this.col + y;
+		case 4:
+			return y * this.col + x;
+		case 5:
+			return my * this.col + mx;
+		case 6:
+			return y * this.col + mx;
+		default:
+			return my * this.col + x;
+		}
+	}
+
+	/**
+	 * 点在变换下的位置
+	 *
+	 * @param s
+	 *            变换编号，小于 {@link #getCount()}
+	 * @param cell
+	 *            点的编码（x * 列数 + y）
+	 * @return 变换后的点的编码
+	 */
+	public int transform(int s, int cell) {
+		return this.cells[s * this.row * this.col + cell];
+	}
+
+	/**
+	 * @param s
+	 *            变换编号
+	 * @return 逆变换的编号
+	 */
+	public int inverse(int s) {
+		return this.inverse[s];
+	}
+
+	/**
+	 * 变换后位置的随机数表，下标 (下子方 * 点数 + 点) * {@link #COUNT} + 变换
+	 */
+	long[] keys() {
+		return this.keys;
+	}
+
+	/**
+	 * 整个棋盘重新计算每个变换后局面的哈希
+	 *
+	 * @param broad
+	 *            二维数组棋盘
+	 * @return 每个变换一个哈希，第0个就是 {@link Zobrist#hash(int[][])}
+	 */
+	long[] hashes(int[][] broad) {
+		long[] hashes = new long[this.count];
+		int size = this.row * this.col;
+		for (int x = 0; x < this.row; x++) {
+			for (int y = 0; y < this.col; y++) {
+				int who = broad[x][y];
+				if (who == Gobang.POINT_INITAL)
+					continue;
+				int base = (who * size + x * this.col + y) * COUNT;
+				for (int s = 0; s < this.count; s++) {
+					hashes[s] ^= this.keys[base + s];
+				}
+			}
+		}
+		return hashes;
+	}
+
+	/**
+	 * @return 这个棋盘大小有几个变换，方形8个，长方形4个
+	 */
+	public int getCount() {
+		return count;
+	}
+
+}
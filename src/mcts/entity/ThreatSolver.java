@@ -0,0 +1,599 @@
+package mcts.entity;
+
+import java.util.Arrays;
+
+/**
+ * 威胁空间搜索：连续冲四取胜（VCF）和连续威胁取胜（VCT）
+ *
+ * 进攻方每一步都必须是威胁。VCF只下冲四、活四，防守方只有一个应法（挡住成五点）；VCT还可以下活三，
+ * 防守方的应法是所有进攻方下了能成四的点（挡活三的点都在其中）以及防守方自己的冲四（反击），每一种应法进攻方都要能继续取胜。
+ * 棋型用 {@link PatternTable} 查表判断，只看已下子周围两格以内的空点（能成四、成活三的点两格以内一定有己方的子）。
+ * 每个空点每个方向双方的棋型以及合起来的最强棋型都缓存起来，下子、撤销时只作废经过这个点的四条线上前后4格的缓存，
+ * 每个节点只需要重新查几十次表。
+ * 防守方的应法只取在进攻方活四点（下了能成活四或者双四的点）所在的线上、距离4格以内的点，其它点改变不了这些棋型。
+ *
+ * 两种搜索都有深度（进攻方的步数）和节点数的限制，还可以设置截止时刻（{@link #setDeadline(long)}），超过限制当作没有找到。它只用来在UCT搜索之前找出已经决定胜负的局面，
+ * 找不到的局面仍然交给UCT搜索。进攻方节点的结果保存在一张固定大小的哈希表中（局面哈希 + 进攻方 + 搜索种类），
+ * 已经证明的胜利总是有效，没有找到的结果记下当时的深度，深度不超过它时直接返回。下了一步之后，上一步搜索过的局面大多仍然可以命中。
+ *
+ * {@link #solve(Gobang, int)} 依次检查：己方成五、挡对方成五、己方VCF、己方VCT、防守对方的VCF，
+ * 代替只看一步的 {@link Gobang#speedPoint()}。实例不是线程安全的，每个引擎（或者每局）一个。
+ *
+ * @author Jervis
+ *
+ */
+public class ThreatSolver {
+
+	/**
+	 * 默认VCF最多几步（进攻方的步数）
+	 */
+	public static final int VCF_DEPTH = 16;
+	/**
+	 * 默认VCT最多几步（进攻方的步数）
+	 */
+	public static final int VCT_DEPTH = 6;
+	/**
+	 * 默认每次搜索（VCF、VCT、防守各算一次）最多访问多少个节点
+	 */
+	public static final int MAX_NODES = 10000;
+	/**
+	 * 默认哈希表的大小
+	 */
+	public static final int TABLE_SIZE = 1 << 16;
+
+	/**
+	 * 可下点的范围
+	 */
+	private static final int RADIUS = 2;
+	/**
+	 * 每访问多少个节点检查一次截止时刻（减1）
+	 */
+	private static final int DEADLINE_CHECK_MASK = 63;
+	/**
+	 * 四个方向：横、竖、主对角线、副对角线
+	 */
+	private static final int[] DX = { 0, 1, 1, 1 };
+	private static final int[] DY = { 1, 0, 1, -1 };
+	/**
+	 * 进攻方是玩家、搜索种类是VCT时异或到局面哈希上的随机数
+	 */
+	private static final long PLAYER_KEY = 0x9E3779B97F4A7C15L;
+	private static final long VCT_KEY = 0xC2B2AE3D27D4EB4FL;
+
+	/**
+	 * 哈希表：key为局面哈希，值大于0为取胜的点 + 1，小于0为 -(没有找到时的深度 + 1)，0为空
+	 */
+	private final long[] keys;
+	private final int[] values;
+	private final int mask;
+
+	private int vcfDepth = VCF_DEPTH;
+	private int vctDepth = VCT_DEPTH;
+	private int maxNodes = MAX_NODES;
+	/**
+	 * 截止时刻（System.nanoTime()），{@link RolloutEngine#NO_DEADLINE} 表示没有
+	 */
+	private long deadline = RolloutEngine.NO_DEADLINE;
+
+	/**
+	 * 搜索用的棋盘，每次搜索从局面复制
+	 */
+	private Gobang board;
+	private int[][] broad;
+	private int col;
+	/**
+	 * 点数
+	 */
+	private int size;
+	/**
+	 * 空点在一个方向上下子之后的棋型，下标 ((下子方 - 1) * 4 + 方向) * 点数 + 点，-1表示需要重新计算
+	 */
+	private byte[] types;
+	/**
+	 * 空点下子之后的最强棋型（{@link #threat(int, int)}），下标 (下子方 - 1) * 点数 + 点，-1表示需要重新计算
+	 */
+	private byte[] threats;
+	private int attacker;
+	private int defender;
+	/**
+	 * 本次搜索访问的节点数
+	 */
+	private int nodes;
+	/**
+	 * 累计访问的节点数
+	 */
+	private long totalNodes;
+	/**
+	 * 本次搜索是否因为节点数限制或者截止时刻中止
+	 */
+	private boolean aborted;
+	/**
+	 * 最近一次找到的取胜（或者防守）的变化
+	 */
+	private int[] line = new int[0];
+
+	public ThreatSolver() {
+		this(TABLE_SIZE);
+	}
+
+	/**
+	 * @param capacity
+	 *            哈希表最多保存多少个局面，会向上取整到2的幂
+	 */
+	public ThreatSolver(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.keys = new long[size];
+		this.values = new int[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * 轮到who下时，有没有必须下的点：己方成五、挡对方成五、己方VCF、己方VCT的第一步、挡住对方VCF的点
+	 *
+	 * @param position
+	 *            当前局面（不会被修改）
+	 * @param who
+	 *            轮到下子的一方
+	 * @return 点的编码，局面没有强制的变化时返回 {@link Gobang#NO_MOVE}，由UCT搜索
+	 */
+	public int solve(Gobang position, int who) {
+		prepare(position);
+		int opponent = opponent(who), block = Gobang.NO_MOVE;
+		for (int cell : this.board.illegalPoints()) {
+			if (threat(cell, who) == PatternTable.FIVE) {
+				this.line = new int[] { cell };
+				return cell;
+			}
+			if (block == Gobang.NO_MOVE && threat(cell, opponent) == PatternTable.FIVE)
+				block = cell;
+		}
+		if (block != Gobang.NO_MOVE) {
+			this.line = new int[] { block };
+			return block;
+		}
+		this.nodes = 0;
+		int move = search(who, false);
+		if (move == Gobang.NO_MOVE) {
+			this.nodes = 0;
+			move = search(who, true);
+		}
+		if (move == Gobang.NO_MOVE) {
+			this.nodes = 0;
+			move = defendVcf(who);
+		}
+		return move;
+	}
+
+	/**
+	 * 连续冲四取胜
+	 *
+	 * @param position
+	 *            当前局面（不会被修改）
+	 * @param who
+	 *            进攻方，轮到它下
+	 * @return 第一步，没有找到返回 {@link Gobang#NO_MOVE}，整个变化见 {@link #getLine()}
+	 */
+	public int vcf(Gobang position, int who) {
+		prepare(position);
+		this.nodes = 0;
+		return search(who, false);
+	}
+
+	/**
+	 * 连续威胁（冲四、活三）取胜
+	 *
+	 * @param position
+	 *            当前局面（不会被修改）
+	 * @param who
+	 *            进攻方，轮到它下
+	 * @return 第一步，没有找到返回 {@link Gobang#NO_MOVE}，整个变化见 {@link #getLine()}
+	 */
+	public int vct(Gobang position, int who) {
+		prepare(position);
+		this.nodes = 0;
+		return search(who, true);
+	}
+
+	private void prepare(Gobang position) {
+		this.board = (Gobang) position.copy();
+		this.board.setRadius(RADIUS);
+		this.broad = this.board.getBroad();
+		this.col = this.board.getCol();
+		this.size = this.board.getRow() * this.col;
+		if (this.types == null || this.types.length != 2 * DX.length * this.size) {
+			this.types = new byte[2 * DX.length * this.size];
+			this.threats = new byte[2 * this.size];
+		}
+		Arrays.fill(this.types, (byte) -1);
+		Arrays.fill(this.threats, (byte) -1);
+		this.line = new int[0];
+	}
+
+	/**
+	 * 在搜索用的棋盘上下子，作废经过这个点的四条线上的棋型缓存
+	 */
+	private void place(int cell, int who) {
+		this.board.make(cell / this.col, cell % this.col, who);
+		invalidate(cell);
+	}
+
+	/**
+	 * 撤销 {@link #place(int, int)}
+	 */
+	private void remove(int cell) {
+		this.board.unmake(cell / this.col, cell % this.col);
+		invalidate(cell);
+	}
+
+	private void invalidate(int cell) {
+		int row = this.board.getRow(), x = cell / this.col, y = cell % this.col;
+		for (int d = 0; d < DX.length; d++) {
+			for (int k = -PatternTable.HALF; k <= PatternTable.HALF; k++) {
+				int i = x + DX[d] * k, j = y + DY[d] * k;
+				if (i < 0 || j < 0 || i >= row || j >= this.col)
+					continue;
+				int moved = i * this.col + j, index = d * this.size + moved;
+				this.types[index] = -1;
+				this.types[index + DX.length * this.size] = -1;
+				this.threats[moved] = -1;
+				this.threats[moved + this.size] = -1;
+			}
+		}
+	}
+
+	private static int opponent(int who) {
+		return who == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
+	}
+
+	/**
+	 * 在搜索用的棋盘上找who的VCF或者VCT，深度从1开始逐步加深，先找到最短的变化；
+	 * 浅的搜索没有找到的局面记在哈希表中，加深时这些局面只需要再往下搜一层。节点数由调用方清零
+	 */
+	private int search(int who, boolean vct) {
+		this.attacker = who;
+		this.defender = opponent(who);
+		this.aborted = false;
+		int move = Gobang.NO_MOVE;
+		for (int depth = 1; depth <= (vct ? this.vctDepth : this.vcfDepth) && move == Gobang.NO_MOVE
+				&& !this.aborted; depth++) {
+			move = attack(depth, vct);
+		}
+		if (move != Gobang.NO_MOVE)
+			this.line = principalLine(vct);
+		return move;
+	}
+
+	/**
+	 * 对方有VCF时找一个挡住的点：依次试对方VCF变化上的点和对方能成四的点，下了之后对方没有VCF的就是。
+	 * 所有的试探共用一次搜索的节点数限制，过了截止时刻不再试
+	 *
+	 * @return 挡住的点，对方没有VCF或者挡不住时返回 {@link Gobang#NO_MOVE}
+	 */
+	private int defendVcf(int who) {
+		int opponent = opponent(who);
+		if (search(opponent, false) == Gobang.NO_MOVE)
+			return Gobang.NO_MOVE;
+		int[] threats = this.line;
+		int[] cells = this.board.illegalPoints();
+		int[] candidates = Arrays.copyOf(threats, threats.length + cells.length);
+		int count = threats.length;
+		for (int cell : cells) {
+			if (threat(cell, opponent) >= PatternTable.FOUR)
+				candidates[count++] = cell;
+		}
+		for (int i = 0; i < count && !timeUp(); i++) {
+			int move = candidates[i];
+			if (!this.board.isIllegal(move))
+				continue;
+			place(move, who);
+			boolean defended = search(opponent, false) == Gobang.NO_MOVE && !this.aborted;
+			remove(move);
+			if (defended) {
+				this.line = new int[] { move };
+				return move;
+			}
+		}
+		this.line = threats;
+		return Gobang.NO_MOVE;
+	}
+
+	/**
+	 * @return 是否已经过了截止时刻
+	 */
+	private boolean timeUp() {
+		return this.deadline != RolloutEngine.NO_DEADLINE && System.nanoTime() - this.deadline > 0;
+	}
+
+	/**
+	 * 进攻方节点：轮到进攻方下
+	 *
+	 * @param depth
+	 *            进攻方还可以下几步
+	 * @param vct
+	 *            是否可以下活三
+	 * @return 取胜的点，没有找到返回 {@link Gobang#NO_MOVE}
+	 */
+	private int attack(int depth, boolean vct) {
+		this.totalNodes++;
+		if (++this.nodes > this.maxNodes || (this.nodes & DEADLINE_CHECK_MASK) == 0 && timeUp()) {
+			this.aborted = true;
+			return Gobang.NO_MOVE;
+		}
+		int[] cells = this.board.illegalPoints();
+		int[] threats = new int[cells.length];
+		int block = Gobang.NO_MOVE, blocks = 0;
+		for (int i = 0; i < cells.length; i++) {
+			threats[i] = threat(cells[i], this.attacker);
+			if (threats[i] == PatternTable.FIVE)
+				return cells[i];
+			if (threat(cells[i], this.defender) == PatternTable.FIVE) {
+				block = cells[i];
+				blocks++;
+			}
+		}
+		if (blocks > 1 || depth == 0)
+			return Gobang.NO_MOVE;
+		long key = key(vct);
+		int index = index(key);
+		if (this.keys[index] == key) {
+			int value = this.values[index];
+			if (value > 0 && this.board.isIllegal(value - 1))
+				return value - 1;
+			if (value < 0 && -value - 1 >= depth)
+				return Gobang.NO_MOVE;
+		}
+		int[] moves;
+		int count = 0;
+		if (blocks == 1) {
+			// 对方有成五点，只能先挡，挡完是否还有威胁由防守方节点判断
+			moves = new int[] { block };
+			count = 1;
+		} else {
+			// 先冲四、活四，再活三
+			moves = new int[cells.length];
+			for (int i = 0; i < cells.length; i++) {
+				if (threats[i] >= PatternTable.FOUR)
+					moves[count++] = cells[i];
+			}
+			for (int i = 0; i < cells.length && vct; i++) {
+				if (threats[i] == PatternTable.OPEN_THREE)
+					moves[count++] = cells[i];
+			}
+		}
+		for (int i = 0; i < count && !this.aborted; i++) {
+			int move = moves[i];
+			place(move, this.attacker);
+			boolean win = defend(depth - 1, vct);
+			remove(move);
+			if (win) {
+				store(key, move + 1);
+				return move;
+			}
+		}
+		if (!this.aborted)
+			store(key, -depth - 1);
+		return Gobang.NO_MOVE;
+	}
+
+	/**
+	 * 防守方节点：轮到防守方下
+	 *
+	 * @param depth
+	 *            进攻方还可以下几步
+	 * @param vct
+	 *            是否可以下活三
+	 * @return 进攻方是否对每一种应法都能取胜
+	 */
+	private boolean defend(int depth, boolean vct) {
+		this.totalNodes++;
+		if (++this.nodes > this.maxNodes || (this.nodes & DEADLINE_CHECK_MASK) == 0 && timeUp()) {
+			this.aborted = true;
+			return false;
+		}
+		int[] cells = this.board.illegalPoints();
+		int[] threats = new int[cells.length];
+		// 进攻方的活四点
+		int[] openFours = new int[cells.length];
+		int five = Gobang.NO_MOVE, fives = 0, threatened = 0;
+		for (int i = 0; i < cells.length; i++) {
+			if (threat(cells[i], this.defender) == PatternTable.FIVE)
+				return false;
+			threats[i] = threat(cells[i], this.attacker);
+			if (threats[i] == PatternTable.FIVE) {
+				five = cells[i];
+				fives++;
+			} else if (threats[i] == PatternTable.OPEN_FOUR) {
+				openFours[threatened++] = cells[i];
+			}
+		}
+		if (fives > 1)
+			return true;
+		int[] replies;
+		int count = 0;
+		if (fives == 1) {
+			replies = new int[] { five };
+			count = 1;
+		} else if (!vct || threatened == 0) {
+			// 进攻方没有威胁，防守方可以随便下
+			return false;
+		} else {
+			replies = new int[cells.length];
+			for (int i = 0; i < cells.length; i++) {
+				if (threats[i] >= PatternTable.FOUR && aligned(cells[i], openFours, threatened)
+						|| threat(cells[i], this.defender) >= PatternTable.FOUR)
+					replies[count++] = cells[i];
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			int reply = replies[i];
+			place(reply, this.defender);
+			boolean win = attack(depth, vct) != Gobang.NO_MOVE;
+			remove(reply);
+			if (!win)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return cell是否在某个点所在的线上、距离不超过 {@link PatternTable#HALF}
+	 */
+	private boolean aligned(int cell, int[] points, int count) {
+		int x = cell / this.col, y = cell % this.col;
+		for (int i = 0; i < count; i++) {
+			int dx = Math.abs(x - points[i] / this.col), dy = Math.abs(y - points[i] % this.col);
+			if ((dx == 0 || dy == 0 || dx == dy) && Math.max(dx, dy) <= PatternTable.HALF)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 按哈希表中保存的取胜点重放一遍变化，防守方挡成五点，没有成五点时取第一个应法
+	 */
+	private int[] principalLine(boolean vct) {
+		int[] line = new int[this.board.getRow() * this.col];
+		int length = 0;
+		while (true) {
+			int move = point(this.attacker, PatternTable.FIVE);
+			boolean five = move != Gobang.NO_MOVE;
+			if (!five) {
+				long key = key(vct);
+				int index = index(key);
+				if (this.keys[index] == key && this.values[index] > 0)
+					move = this.values[index] - 1;
+			}
+			if (move == Gobang.NO_MOVE || !this.board.isIllegal(move))
+				break;
+			place(move, this.attacker);
+			line[length++] = move;
+			if (five)
+				break;
+			int reply = point(this.attacker, PatternTable.FIVE);
+			if (reply == Gobang.NO_MOVE)
+				reply = point(this.attacker, PatternTable.FOUR);
+			if (reply == Gobang.NO_MOVE)
+				break;
+			place(reply, this.defender);
+			line[length++] = reply;
+		}
+		for (int i = length - 1; i >= 0; i--)
+			remove(line[i]);
+		return Arrays.copyOf(line, length);
+	}
+
+	/**
+	 * @return 第一个who下了至少能成type的点，没有返回 {@link Gobang#NO_MOVE}
+	 */
+	private int point(int who, int type) {
+		for (int cell : this.board.illegalPoints()) {
+			if (threat(cell, who) >= type)
+				return cell;
+		}
+		return Gobang.NO_MOVE;
+	}
+
+	/**
+	 * who在空点cell下子之后形成的最强棋型，两个方向的冲四（双四）算活四
+	 *
+	 * @return {@link PatternTable} 的棋型
+	 */
+	private int threat(int cell, int who) {
+		int cached = this.threats[(who - 1) * this.size + cell];
+		if (cached >= 0)
+			return cached;
+		int best = PatternTable.NONE, fours = 0;
+		for (int d = 0; d < DX.length; d++) {
+			int index = ((who - 1) * DX.length + d) * this.size + cell, type = this.types[index];
+			if (type < 0) {
+				type = PatternTable.type(PatternTable.encode(this.broad, cell / this.col, cell % this.col, DX[d], DY[d],
+						who) + PatternTable.CENTER);
+				this.types[index] = (byte) type;
+			}
+			if (type == PatternTable.FOUR)
+				fours++;
+			best = Math.max(best, type);
+		}
+		if (best == PatternTable.FOUR && fours > 1)
+			best = PatternTable.OPEN_FOUR;
+		this.threats[(who - 1) * this.size + cell] = (byte) best;
+		return best;
+	}
+
+	private long key(boolean vct) {
+		return this.board.getHash() ^ (this.attacker == Gobang.POINT_PLAYER ? PLAYER_KEY : 0)
+				^ (vct ? VCT_KEY : 0);
+	}
+
+	private int index(long key) {
+		return (int) (key ^ (key >>> 32)) & this.mask;
+	}
+
+	private void store(long key, int value) {
+		int index = index(key);
+		this.keys[index] = key;
+		this.values[index] = value;
+	}
+
+	/**
+	 * 清空哈希表
+	 */
+	public void clear() {
+		Arrays.fill(this.keys, 0);
+		Arrays.fill(this.values, 0);
+	}
+
+	/**
+	 * @return 最近一次找到的变化：取胜时为双方轮流下的点（进攻方先下，到成五为止或者到哈希表中没有的局面为止），
+	 *         防守时只有挡住的点，没有找到时为空
+	 */
+	public int[] getLine() {
+		return line;
+	}
+
+	/**
+	 * @return 累计访问的节点数
+	 */
+	public long getTotalNodes() {
+		return totalNodes;
+	}
+
+	public int getVcfDepth() {
+		return vcfDepth;
+	}
+
+	public void setVcfDepth(int vcfDepth) {
+		this.vcfDepth = vcfDepth;
+	}
+
+	public int getVctDepth() {
+		return vctDepth;
+	}
+
+	public void setVctDepth(int vctDepth) {
+		this.vctDepth = vctDepth;
+	}
+
+	public int getMaxNodes() {
+		return maxNodes;
+	}
+
+	public void setMaxNodes(int maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * 设置截止时刻，超过则中止搜索，当作没有找到
+	 *
+	 * @param deadline
+	 *            截止时刻（System.nanoTime()），{@link RolloutEngine#NO_DEADLINE} 表示没有
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+}
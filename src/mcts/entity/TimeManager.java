@@ -0,0 +1,308 @@
+package mcts.entity;
+
+/**
+ * 时间管理：按棋钟给每一步分配思考时间，并在搜索中判断能否提前结束
+ *
+ * 每一步有两个时间：软时间是正常的预算，按剩余时间、估计的剩余步数和每步加时计算，开局减半；
+ * 硬时间是绝对上限，不超过棋钟上现有的时间（加时在一步结束之后才加上），局面不清楚（模拟次数最多的点与平均分最高的点不同，或者最多的点占比不到一半）时可以用到硬时间。
+ * 搜索过程中，如果按当前速度到软时间为止的模拟次数，已经不够第二名追上第一名，就提前结束。
+ * 硬时间同时传给模拟对局（见 {@link GobangUCT#setDeadline(long)}），较长的模拟也不会超时。
+ *
+ * 一个对象对应一方的棋钟，一步的搜索之前调用 {@link #start(Node)}，之后调用 {@link #finish()}。
+ * 搜索之前的威胁空间搜索用 {@link #threatDeadline()} 限时，需要继续搜索时用 {@link #charge(long)} 把它的用时算进这一步；
+ * 不搜索就下的一步（威胁空间搜索、开局库）同样用 {@link #charge(long)} 记下用时，再调用 {@link #finish()}。
+ *
+ * @author Jervis
+ *
+ */
+public class TimeManager {
+
+	/**
+	 * 每步预留的时间（线程调度、垃圾回收等），毫秒
+	 */
+	public static final long SAFETY_MARGIN = 50;
+	/**
+	 * 硬时间至少多少毫秒，时间快用完时也至少搜索这么久
+	 */
+	public static final long MIN_HARD = 5;
+	/**
+	 * 估计的剩余步数至少是多少
+	 */
+	public static final int MIN_MOVES_LEFT = 8;
+	/**
+	 * 估计一局结束时棋盘上子的比例
+	 */
+	public static final double EXPECTED_FILL = 0.25;
+	/**
+	 * 棋盘上的子少于这个数时是开局，预算减半
+	 */
+	public static final int OPENING_STONES = 4;
+	/**
+	 * 硬时间最多是软时间的多少倍
+	 */
+	public static final double EXTENSION = 2.5;
+	/**
+	 * 硬时间最多占剩余时间的比例
+	 */
+	public static final double MAX_SHARE = 0.3;
+	/**
+	 * 模拟次数最多的点占根节点模拟次数的比例低于这个值，认为局面不清楚
+	 */
+	public static final double UNCLEAR_SHARE = 0.5;
+	/**
+	 * 用了软时间的这个比例以后，才开始判断能否提前结束
+	 */
+	public static final double MIN_SEARCH_SHARE = 0.1;
+	/**
+	 * 搜索之前的威胁空间搜索最多用这一步预计时间的比例
+	 */
+	public static final double THREAT_SHARE = 0.25;
+	/**
+	 * 不限时搜索的时间，毫秒（换算成纳秒加上开始时刻也不会溢出）
+	 */
+	public static final long INFINITE = Long.MAX_VALUE / 4 / 1000000;
+
+	/**
+	 * 每步固定的时间，0表示按棋钟分配
+	 */
+	private final long fixed;
+	/**
+	 * 棋钟剩余时间，毫秒
+	 */
+	private long remaining;
+	/**
+	 * 每步加时，毫秒
+	 */
+	private final long increment;
+	/**
+	 * 每步最多多少毫秒（例如比赛规定的每步时限），默认不限制
+	 */
+	private long maxTurn = Long.MAX_VALUE;
+	/**
+	 * 本步的软时间和硬时间，毫秒
+	 */
+	private long soft, hard;
+	/**
+	 * 本步开始的时间（System.nanoTime()）
+	 */
+	private long start;
+	/**
+	 * 本步是否调用过 {@link #start(Node)}
+	 */
+	private boolean started;
+	/**
+	 * 本步开始时根节点已有的模拟次数（复用的子树）
+	 */
+	private int startN;
+	/**
+	 * 本步搜索之前已经用掉的时间（{@link #charge(long)}），毫秒，{@link #finish()} 时清零
+	 */
+	private long charged;
+
+	/**
+	 * @param totalMillis
+	 *            整局的时间，毫秒
+	 * @param incrementMillis
+	 *            每步加时，毫秒
+	 */
+	public TimeManager(long totalMillis, long incrementMillis) {
+		this(0, totalMillis, incrementMillis);
+	}
+
+	private TimeManager(long fixed, long remaining, long increment) {
+		this.fixed = fixed;
+		this.remaining = remaining;
+		this.increment = increment;
+	}
+
+	/**
+	 * 每步固定时间，不提前结束也不延长
+	 *
+	 * @param millis
+	 *            每步多少毫秒
+	 * @return 时间管理
+	 */
+	public static TimeManager fixed(long millis) {
+		return new TimeManager(millis, Long.MAX_VALUE, 0);
+	}
+
+	/**
+	 * 不限时，只能从外部中止（例如后台思考）
+	 *
+	 * @return 时间管理
+	 */
+	public static TimeManager infinite() {
+		return fixed(INFINITE);
+	}
+
+	/**
+	 * 开始一步：按局面分配软时间和硬时间，开始计时
+	 *
+	 * @param root
+	 *            根节点，必须有棋盘
+	 */
+	public void start(Node root) {
+		this.start = System.nanoTime();
+		this.started = true;
+		this.startN = root.getN();
+		if (this.fixed > 0) {
+			this.soft = this.hard = Math.max(1, Math.min(this.fixed, this.maxTurn) - this.charged);
+			return;
+		}
+		Gobang position = root.getGobang();
+		int cells = position.getRow() * position.getCol();
+		int stones = stones(position);
+		// 估计自己还要下多少步
+		int movesLeft = Math.max(MIN_MOVES_LEFT, (int) (cells * EXPECTED_FILL - stones) / 2);
+		// 棋钟上可以分配的时间。软时间算上加时，但加时在这一步结束之后才加到棋钟上（见 finish()），
+		// 所以硬时间不超过棋钟上现有的时间，时间快用完时至少搜索 MIN_HARD
+		long bank = Math.max(0, this.remaining - this.charged - SAFETY_MARGIN);
+		long soft = bank / movesLeft + this.increment * 3 / 4;
+		if (stones < OPENING_STONES)
+			soft /= 2;
+		long hard = Math.min((long) (soft * EXTENSION), (long) (bank * MAX_SHARE) + this.increment);
+		this.hard = Math.min(Math.max(Math.min(hard, bank), MIN_HARD), Math.max(1, this.maxTurn - this.charged));
+		this.soft = Math.min(soft, this.hard);
+	}
+
+	private static int stones(Gobang position) {
+		int stones = 0;
+		for (int[] line : position.getBroad())
+			for (int value : line)
+				if (value != Gobang.POINT_INITAL)
+					stones++;
+		return stones;
+	}
+
+	/**
+	 * 判断搜索能否结束：到了硬时间；到了软时间并且局面清楚；
+	 * 或者按当前速度到软时间为止，第二名已经追不上第一名
+	 *
+	 * @param root
+	 *            根节点
+	 * @return true 结束搜索
+	 */
+	public boolean shouldStop(Node root) {
+		long elapsed = getElapsed();
+		if (elapsed >= this.hard)
+			return true;
+		if (this.fixed > 0)
+			return false;
+		if (!root.hasChild())
+			return true;
+		// 模拟次数最多、第二多的点，和平均分最高的点
+		Node first = null, best = null;
+		int secondN = 0;
+		for (Node child : root.getChilds()) {
+			int n = child.getN();
+			if (first == null || n > first.getN()) {
+				secondN = first == null ? 0 : first.getN();
+				first = child;
+			} else if (n > secondN) {
+				secondN = n;
+			}
+			if (n > 0 && (best == null || child.getValue() > best.getValue()))
+				best = child;
+		}
+		int total = root.getN();
+		boolean clear = first == best && first.getN() >= total * UNCLEAR_SHARE;
+		if (elapsed >= this.soft)
+			return clear;
+		if (!clear || elapsed < this.soft * MIN_SEARCH_SHARE)
+			return false;
+		double rate = (double) (total - this.startN) / Math.max(1, elapsed);
+		return first.getN() - secondN > rate * (this.soft - elapsed);
+	}
+
+	/**
+	 * 结束一步：从棋钟扣除用时（搜索的时间和 {@link #charge(long)} 记下的时间，没有搜索时只有后者），加上每步加时
+	 *
+	 * @return 本步用时，毫秒
+	 */
+	public long finish() {
+		long elapsed = (this.started ? getElapsed() : 0) + this.charged;
+		this.started = false;
+		this.charged = 0;
+		if (this.fixed == 0)
+			this.remaining = this.remaining - elapsed + this.increment;
+		return elapsed;
+	}
+
+	/**
+	 * 搜索之前的威胁空间搜索的截止时刻：从现在起最多用这一步预计时间
+	 * （每步时限，以及剩余时间平均分到 {@link #MIN_MOVES_LEFT} 步再加上加时、但不超过剩余时间，两者较小的一个）的 {@link #THREAT_SHARE}
+	 *
+	 * @return 截止时刻（System.nanoTime()）
+	 */
+	public long threatDeadline() {
+		long bank = Math.max(0, this.remaining - SAFETY_MARGIN);
+		long turn = this.fixed > 0 ? this.fixed : Math.min(bank / MIN_MOVES_LEFT + this.increment, bank);
+		return System.nanoTime() + (long) (Math.min(turn, this.maxTurn) * THREAT_SHARE) * 1000000;
+	}
+
+	/**
+	 * 搜索之前已经用掉的时间（例如威胁空间搜索）算进这一步：{@link #start(Node)} 从可分配的时间和每步时限中扣除，
+	 * {@link #finish()} 从棋钟扣除
+	 *
+	 * @param millis
+	 *            用掉的时间，毫秒
+	 */
+	public void charge(long millis) {
+		this.charged += millis;
+	}
+
+	/**
+	 * @return 本步已经用了多少毫秒
+	 */
+	public long getElapsed() {
+		return (System.nanoTime() - this.start) / 1000000;
+	}
+
+	/**
+	 * @return 本步硬时间的截止时刻（System.nanoTime()）
+	 */
+	public long getHardDeadline() {
+		return this.start + this.hard * 1000000;
+	}
+
+	public long getRemaining() {
+		return remaining;
+	}
+
+	/**
+	 * 以外部的计时为准更新棋钟剩余时间（例如对局管理程序发来的剩余时间）
+	 *
+	 * @param remaining
+	 *            剩余时间，毫秒
+	 */
+	public void setRemaining(long remaining) {
+		this.remaining = remaining;
+	}
+
+	public long getMaxTurn() {
+		return maxTurn;
+	}
+
+	/**
+	 * 限制每步的时间，软时间和硬时间都不超过这个值
+	 *
+	 * @param maxTurn
+	 *            每步最多多少毫秒，至少为1
+	 */
+	public void setMaxTurn(long maxTurn) {
+		this.maxTurn = Math.max(1, maxTurn);
+	}
+
+	public long getIncrement() {
+		return increment;
+	}
+
+	public long getSoft() {
+		return soft;
+	}
+
+	public long getHard() {
+		return hard;
+	}
+
+}
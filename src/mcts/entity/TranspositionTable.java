@@ -0,0 +1,81 @@
+package mcts.entity;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 置换表
+ *
+ * 以局面的规范哈希（{@link Gobang#getCanonicalHash()}，与旋转、翻转无关）为key，保存 {@link NodeStats}。
+ * 不同走法顺序到达的同一局面（先A后B 与 先B后A）以及互相对称的局面共用一份统计，
+ * 搜索树因此变成一张有向无环图。表的大小固定，槽位冲突时直接替换，被替换的统计仍然被原来的节点引用，只是不再被共享。
+ * 槽位使用原子引用数组，多线程共享同一张表也不需要加锁。
+ *
+ * @author Jervis
+ *
+ */
+public class TranspositionTable {
+
+	private final AtomicReferenceArray<NodeStats> table;
+	private final int mask;
+
+	/**
+	 * @param capacity
+	 *            最多保存多少个局面，会向上取整到2的幂
+	 */
+	public TranspositionTable(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.table = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * 查找局面的统计
+	 *
+	 * @param key
+	 *            局面哈希
+	 * @return 没有找到返回null
+	 */
+	public NodeStats get(long key) {
+		NodeStats stats = this.table.get(index(key));
+		return stats != null && stats.getKey() == key ? stats : null;
+	}
+
+	/**
+	 * 查找局面的统计，没有则新建并放入表中
+	 *
+	 * @param key
+	 *            局面哈希
+	 * @return 共享的统计对象
+	 */
+	public NodeStats getOrCreate(long key) {
+		int index = index(key);
+		NodeStats created = null;
+		while (true) {
+			NodeStats stats = this.table.get(index);
+			if (stats != null && stats.getKey() == key)
+				return stats;
+			if (created == null)
+				created = new NodeStats(key);
+			if (this.table.compareAndSet(index, stats, created))
+				return created;
+		}
+	}
+
+	/**
+	 * 清空置换表
+	 */
+	public void clear() {
+		for (int i = 0; i < this.table.length(); i++) {
+			this.table.set(i, null);
+		}
+	}
+
+	public int capacity() {
+		return this.table.length();
+	}
+
+	private int index(long key) {
+		return (int) (key ^ (key >>> 32)) & this.mask;
+	}
+
+}
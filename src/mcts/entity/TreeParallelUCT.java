@@ -0,0 +1,226 @@
+package mcts.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import mcts.abs.SearchListener;
+import mcts.exception.IllegalPointException;
+
+/**
+ * 树并行搜索
+ *
+ * 所有线程在同一棵树上同时做选择、扩展、模拟、传播。节点统计是无锁原子的，
+ * 选择时加虚拟损失让线程分散到不同分支，扩展时只有抢到扩展权的线程创建子节点。
+ * 与 {@link RootParallelUCT} 的N棵浅树不同，这里得到的是一棵更大更深的树。
+ * 每次搜索的统计（{@link SearchStats}）记录在结果中，同时发布到 {@link SearchMetrics}（JMX）和JFR事件。
+ *
+ * @author Jervis
+ *
+ */
+public class TreeParallelUCT {
+
+	/**
+	 * 默认虚拟损失次数
+	 */
+	public static final int VIRTUAL_LOSS = 3;
+	/**
+	 * 检查能否结束搜索的间隔，毫秒
+	 */
+	public static final long CHECK_INTERVAL = 10;
+	/**
+	 * 进度回调的间隔，毫秒
+	 */
+	public static final long PROGRESS_INTERVAL = 250;
+
+	/**
+	 * 线程数
+	 */
+	private final int threads;
+	/**
+	 * 所有线程共享的UCT（共享置换表）
+	 */
+	private final GobangUCT gobangUCT;
+	/**
+	 * 搜索线程池
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * @param threads
+	 *            线程数
+	 * @param transpositionSize
+	 *            共享置换表的大小，0表示不使用置换表
+	 * @param virtualLoss
+	 *            虚拟损失次数
+	 */
+	public TreeParallelUCT(int threads, int transpositionSize, int virtualLoss) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		this.threads = threads;
+		this.gobangUCT = new GobangUCT(transpositionSize > 0 ? new TranspositionTable(transpositionSize) : null,
+				virtualLoss, true);
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "uct-tree-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * 搜索
+	 *
+	 * @param gobang
+	 *            当前棋盘（不会被修改）
+	 * @param lastMove
+	 *            对手最后下的点，没有则为 {@link Gobang#NO_MOVE}
+	 * @param millis
+	 *            搜索多少毫秒
+	 * @return 搜索结果
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	public SearchResult search(Gobang gobang, int lastMove, long millis) throws IllegalPointException {
+		return search(new Node(lastMove, (Gobang) gobang.copy()), millis);
+	}
+
+	/**
+	 * 从已有的根节点继续搜索，之前的统计保留（见 {@link GobangEngine} 的子树复用）
+	 *
+	 * @param root
+	 *            根节点，必须有棋盘
+	 * @param millis
+	 *            搜索多少毫秒
+	 * @return 搜索结果
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	public SearchResult search(Node root, long millis) throws IllegalPointException {
+		return search(root, TimeManager.fixed(millis));
+	}
+
+	/**
+	 * 从已有的根节点继续搜索，由时间管理决定什么时候结束：搜索线程一直模拟，当前线程定时检查能否提前结束，
+	 * 模拟对局超过硬时间会被中止
+	 *
+	 * @param root
+	 *            根节点，必须有棋盘
+	 * @param timeManager
+	 *            时间管理，搜索开始时调用 {@link TimeManager#start(Node)}，结束时调用 {@link TimeManager#finish()}
+	 * @return 搜索结果
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	public SearchResult search(Node root, TimeManager timeManager) throws IllegalPointException {
+		return search(root, timeManager, new AtomicBoolean(), null);
+	}
+
+	/**
+	 * 可以从外部中止的搜索：stop被设置后，搜索线程做完手上的模拟就结束，返回到这时为止的结果
+	 *
+	 * @param root
+	 *            根节点，必须有棋盘
+	 * @param timeManager
+	 *            时间管理，搜索开始时调用 {@link TimeManager#start(Node)}，结束时调用 {@link TimeManager#finish()}
+	 * @param stop
+	 *            停止标志
+	 * @param listener
+	 *            进度回调，每 {@link #PROGRESS_INTERVAL} 毫秒在当前线程上调用一次，可以为null
+	 * @return 搜索结果
+	 * @throws IllegalPointException
+	 *             当前点不合法则会抛出此异常
+	 */
+	public SearchResult search(Node root, TimeManager timeManager, AtomicBoolean stop, SearchListener listener)
+			throws IllegalPointException {
+		long start = System.currentTimeMillis();
+		SearchMetrics metrics = SearchMetrics.getInstance();
+		Object event = metrics.begin();
+		SearchStats stats = new SearchStats(this.threads);
+		long allocated = SearchStats.threadAllocatedBytes();
+		timeManager.start(root);
+		long deadline = timeManager.getHardDeadline();
+		this.gobangUCT.setDeadline(deadline);
+		this.gobangUCT.setStats(stats);
+		this.gobangUCT.expansion(root);
+		SearchResult result = new SearchResult(root, this.threads);
+		result.setStats(stats);
+		if (root.hasChild() && !stop.get()) {
+			List<Future<Long>> futures = new ArrayList<>();
+			for (int i = 0; i < this.threads; i++) {
+				futures.add(this.executor.submit(() -> {
+					long simulations = 0, before = SearchStats.threadAllocatedBytes();
+					while (!stop.get() && System.nanoTime() - deadline < 0) {
+						if (this.gobangUCT.simulation(root) != null)
+							simulations++;
+					}
+					if (before >= 0)
+						stats.addAllocatedBytes(SearchStats.threadAllocatedBytes() - before);
+					return simulations;
+				}));
+			}
+			try {
+				long progress = start + PROGRESS_INTERVAL;
+				while (!stop.get() && !timeManager.shouldStop(root)) {
+					Thread.sleep(CHECK_INTERVAL);
+					long now = System.currentTimeMillis();
+					if (listener != null && now >= progress) {
+						result.setElapsed(now - start);
+						try {
+							listener.progress(result);
+						} catch (RuntimeException e) {
+							e.printStackTrace();
+						}
+						progress = now + PROGRESS_INTERVAL;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				stop.set(true);
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					result.setSimulations(i, futures.get(i).get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				} catch (ExecutionException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		this.gobangUCT.setDeadline(RolloutEngine.NO_DEADLINE);
+		this.gobangUCT.setStats(null);
+		timeManager.finish();
+		result.setElapsed(System.currentTimeMillis() - start);
+		// 当前线程（根节点扩展、定时检查）分配的内存也算在内
+		if (allocated >= 0)
+			stats.addAllocatedBytes(SearchStats.threadAllocatedBytes() - allocated);
+		stats.finish(root, result.getElapsed());
+		metrics.record(stats, event);
+		return result;
+	}
+
+	/**
+	 * 关闭线程池
+	 */
+	public void shutdown() {
+		this.executor.shutdownNow();
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return 搜索使用的UCT，可以用 {@link GobangUCT#setTreePolicy(mcts.abs.TreePolicy)} 更换树策略
+	 */
+	public GobangUCT getGobangUCT() {
+		return gobangUCT;
+	}
+
+}
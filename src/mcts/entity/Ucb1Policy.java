@@ -0,0 +1,44 @@
+package mcts.entity;
+
+import mcts.abs.TreePolicy;
+
+/**
+ * UCB1：平均分 + C * sqrt(2 * ln(父节点模拟次数) / 模拟次数)，与原来 {@link GobangUCT} 的公式一致
+ *
+ * @author Jervis
+ *
+ */
+public class Ucb1Policy implements TreePolicy {
+
+	/**
+	 * 探索常数
+	 */
+	private final double c;
+
+	public Ucb1Policy() {
+		this(GobangUCT.C);
+	}
+
+	/**
+	 * @param c
+	 *            探索常数
+	 */
+	public Ucb1Policy(double c) {
+		this.c = c;
+	}
+
+	@Override
+	public double prepare(int parentN) {
+		return Math.log(Math.max(1, parentN));
+	}
+
+	@Override
+	public double score(double value, double squares, int n, double prior, double parent) {
+		return value + this.c * Math.sqrt(2 * parent / n);
+	}
+
+	public double getC() {
+		return c;
+	}
+
+}
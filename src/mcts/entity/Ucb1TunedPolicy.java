@@ -0,0 +1,51 @@
+package mcts.entity;
+
+import mcts.abs.TreePolicy;
+
+/**
+ * UCB1-Tuned：用得分的方差代替UCB1中固定的上界，
+ * 平均分 + C * sqrt(ln(N) / n * min(MAX_VARIANCE, 方差 + sqrt(2 * ln(N) / n)))
+ *
+ * @author Jervis
+ *
+ */
+public class Ucb1TunedPolicy implements TreePolicy {
+
+	/**
+	 * 方差的上界（原公式得分在[0, 1]，上界为1/4；这里得分在[-1, 1]，上界为1）
+	 */
+	public static final double MAX_VARIANCE = 1;
+
+	/**
+	 * 探索常数
+	 */
+	private final double c;
+
+	public Ucb1TunedPolicy() {
+		this(1);
+	}
+
+	/**
+	 * @param c
+	 *            探索常数
+	 */
+	public Ucb1TunedPolicy(double c) {
+		this.c = c;
+	}
+
+	@Override
+	public double prepare(int parentN) {
+		return Math.log(Math.max(1, parentN));
+	}
+
+	@Override
+	public double score(double value, double squares, int n, double prior, double parent) {
+		double variance = Math.max(0, squares / n - value * value) + Math.sqrt(2 * parent / n);
+		return value + this.c * Math.sqrt(parent / n * Math.min(MAX_VARIANCE, variance));
+	}
+
+	public double getC() {
+		return c;
+	}
+
+}
@@ -0,0 +1,70 @@
+package mcts.entity;
+
+import java.util.Random;
+
+/**
+ * Zobrist哈希
+ * 
+ * 每个格子、每个下子方各一个随机数，局面哈希为所有已下子随机数的异或，下子或者撤销都只需要异或一次
+ * 
+ * @author Jervis
+ *
+ */
+public final class Zobrist {
+
+	/**
+	 * 支持的最大棋盘边长
+	 */
+	public static final int MAX_SIZE = 32;
+
+	/**
+	 * 随机数表，下标为 who * MAX_SIZE * MAX_SIZE + x * MAX_SIZE + y
+	 */
+	private static final long[] KEYS = new long[3 * MAX_SIZE * MAX_SIZE];
+
+	static {
+		// 固定种子，保证每次启动哈希一致（开局库等需要持久化哈希）
+		Random random = new Random(0x5EED_601BL);
+		for (int i = MAX_SIZE * MAX_SIZE; i < KEYS.length; i++) {
+			KEYS[i] = random.nextLong();
+		}
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * 获得一个子的随机数
+	 * 
+	 * @param who
+	 *            玩家 or AI
+	 * @param x
+	 *            坐标x
+	 * @param y
+	 *            坐标y
+	 * @return 随机数
+	 */
+	public static long key(int who, int x, int y) {
+		return KEYS[who * MAX_SIZE * MAX_SIZE + x * MAX_SIZE + y];
+	}
+
+	/**
+	 * 整个棋盘重新计算哈希
+	 * 
+	 * @param broad
+	 *            二维数组棋盘
+	 * @return 哈希值
+	 */
+	public static long hash(int[][] broad) {
+		long hash = 0;
+		for (int i = 0; i < broad.length; i++) {
+			for (int j = 0; j < broad[i].length; j++) {
+				if (broad[i][j] != Gobang.POINT_INITAL) {
+					hash ^= key(broad[i][j], i, j);
+				}
+			}
+		}
+		return hash;
+	}
+
+}
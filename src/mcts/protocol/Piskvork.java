@@ -0,0 +1,457 @@
+package mcts.protocol;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import mcts.entity.Gobang;
+import mcts.entity.GobangEngine;
+import mcts.entity.OpeningBook;
+import mcts.entity.SearchResult;
+import mcts.entity.TimeManager;
+import mcts.entity.TreeParallelUCT;
+import mcts.entity.Zobrist;
+import mcts.exception.IllegalPointException;
+
+/**
+ * 标准输入输出上的 Piskvork（Gomocup）协议，无界面运行引擎，不加载 JavaFX
+ *
+ * 支持的命令：START、RECTSTART、RESTART、BEGIN、TURN、BOARD、TAKEBACK、INFO、ABOUT、END。
+ * 协议的坐标是"列,行"，从0开始；引擎的点是 {@link Gobang#move(int, int)}（x为行，y为列）。
+ * 引擎一方总是AI，对手是玩家。
+ *
+ * 时间：每一步由 {@link TimeManager} 分配，整局时限（INFO timeout_match）按棋钟分配，同时不超过每步时限（INFO timeout_turn），
+ * 两者都预留 {@link #TURN_MARGIN} 给进程通信。每局一个棋钟，每一步（包括不搜索就下的一步）结束后扣除用时；
+ * 收到 INFO time_left 时，下一步以对局管理程序发来的剩余时间为准。
+ * 内存：置换表的大小按 INFO max_memory 计算；搜索中堆内存超过限制的 {@link #MEMORY_SHARE} 时提前结束本步，
+ * JVM 自己的堆上限（-Xmx）需要启动时设置为不超过 max_memory。
+ * 比赛规则不允许在对手的时间里思考，所以不后台思考。
+ * 开局库（{@link OpeningBook}）在启动时只读映射，每一步先查开局库，查到就不搜索。
+ *
+ * @author Jervis
+ *
+ */
+public class Piskvork {
+
+	/**
+	 * 默认每步时限，毫秒
+	 */
+	public static final long DEFAULT_TIMEOUT_TURN = 5000;
+	/**
+	 * 每步预留给进程通信、启动线程等的时间，毫秒
+	 */
+	public static final long TURN_MARGIN = 100;
+	/**
+	 * 置换表最多使用内存限制的比例
+	 */
+	public static final double TRANSPOSITION_SHARE = 0.25;
+	/**
+	 * 置换表每个局面大约占用的字节数（统计对象加上槽位）
+	 */
+	public static final int TRANSPOSITION_ENTRY_BYTES = 64;
+	/**
+	 * 默认置换表大小（不限内存时）
+	 */
+	public static final int TRANSPOSITION_SIZE = 1 << 18;
+	/**
+	 * 堆内存超过内存限制的这个比例时提前结束搜索
+	 */
+	public static final double MEMORY_SHARE = 0.8;
+	/**
+	 * 默认开局库文件
+	 */
+	public static final String BOOK = "book.bin";
+	/**
+	 * 最小棋盘边长
+	 */
+	public static final int MIN_SIZE = 5;
+
+	private final BufferedReader in;
+	private final PrintStream out;
+
+	/**
+	 * 搜索线程数
+	 */
+	private final int threads;
+	/**
+	 * 棋盘大小，START 之前为0
+	 */
+	private int row, col;
+	/**
+	 * 引擎，第一次需要时按当前的大小和内存限制创建
+	 */
+	private GobangEngine engine;
+	/**
+	 * 开局库，为null时不使用
+	 */
+	private OpeningBook openingBook;
+	/**
+	 * 本局双方已下的点和下子方，悔棋时重新摆出局面
+	 */
+	private final List<int[]> history = new ArrayList<>();
+
+	/**
+	 * 每步时限，毫秒，0表示尽快下
+	 */
+	private long timeoutTurn = DEFAULT_TIMEOUT_TURN;
+	/**
+	 * 整局时限，毫秒，0表示不限
+	 */
+	private long timeoutMatch;
+	/**
+	 * 对局管理程序发来、还没有用到棋钟上的整局剩余时间（INFO time_left），毫秒，-1表示没有
+	 */
+	private long timeLeft = -1;
+	/**
+	 * 本局AI一方的棋钟，第一次思考时按整局时限创建，新的一局（START、RESTART）或者整局时限改变时重新创建
+	 */
+	private TimeManager clock;
+	/**
+	 * 内存限制，字节，0表示不限
+	 */
+	private long maxMemory;
+
+	/**
+	 * @param in
+	 *            命令输入
+	 * @param out
+	 *            回复输出
+	 * @param threads
+	 *            搜索线程数
+	 */
+	public Piskvork(BufferedReader in, PrintStream out, int threads) {
+		this.in = in;
+		this.out = out;
+		this.threads = threads;
+	}
+
+	/**
+	 * 逐行读命令并回复，直到 END 或者输入结束
+	 *
+	 * @throws IOException
+	 *             读输入失败
+	 */
+	public void run() throws IOException {
+		try {
+			String line;
+			while ((line = this.in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty())
+					continue;
+				if (!command(line))
+					break;
+			}
+		} finally {
+			if (this.engine != null)
+				this.engine.shutdown();
+		}
+	}
+
+	/**
+	 * 处理一条命令
+	 *
+	 * @param line
+	 *            命令行
+	 * @return false 收到 END
+	 * @throws IOException
+	 *             BOARD 读取局面失败
+	 */
+	boolean command(String line) throws IOException {
+		int space = line.indexOf(' ');
+		String name = (space < 0 ? line : line.substring(0, space)).toUpperCase();
+		String args = space < 0 ? "" : line.substring(space + 1).trim();
+		try {
+			switch (name) {
+			case "START":
+				start(Integer.parseInt(args), Integer.parseInt(args));
+				break;
+			case "RECTSTART": {
+				String[] size = args.split(",");
+				start(Integer.parseInt(size[1].trim()), Integer.parseInt(size[0].trim()));
+				break;
+			}
+			case "RESTART":
+				if (requireStarted()) {
+					this.clock = null;
+					newGame();
+					this.out.println("OK");
+				}
+				break;
+			case "BEGIN":
+				if (requireStarted())
+					reply(think());
+				break;
+			case "TURN":
+				if (requireStarted()) {
+					play(parseMove(args), Gobang.POINT_PLAYER);
+					reply(think());
+				}
+				break;
+			case "BOARD":
+				board();
+				break;
+			case "TAKEBACK":
+				if (requireStarted()) {
+					takeback(parseMove(args));
+					this.out.println("OK");
+				}
+				break;
+			case "INFO":
+				info(args);
+				break;
+			case "ABOUT":
+				this.out.println("name=\"uct-gobang\", version=\"1.0\", author=\"Jervis\", country=\"China\"");
+				break;
+			case "END":
+				return false;
+			default:
+				this.out.println("UNKNOWN " + line);
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException | IllegalPointException
+				| CompletionException e) {
+			this.out.println("ERROR " + e.getMessage());
+		}
+		return true;
+	}
+
+	/**
+	 * 开始新的一局，棋盘大小改变时下一次需要时重新创建引擎
+	 */
+	private void start(int row, int col) {
+		if (Math.min(row, col) < MIN_SIZE || Math.max(row, col) > Zobrist.MAX_SIZE) {
+			this.out.println("ERROR unsupported size " + col + "," + row);
+			return;
+		}
+		if (row != this.row || col != this.col)
+			dropEngine();
+		this.row = row;
+		this.col = col;
+		this.clock = null;
+		newGame();
+		this.out.println("OK");
+	}
+
+	private boolean requireStarted() {
+		if (this.row == 0)
+			this.out.println("ERROR START first");
+		return this.row != 0;
+	}
+
+	private void newGame() {
+		this.history.clear();
+		if (this.engine != null)
+			this.engine.newGame();
+	}
+
+	/**
+	 * BOARD：读出局面（每行"列,行,谁"，1为自己、2为对手，3为连续对局中的五连线按对手处理），直到 DONE，然后下一步
+	 */
+	private void board() throws IOException, IllegalPointException {
+		// 先读完整个局面，出错时剩下的行不会被当成命令
+		List<String> lines = new ArrayList<>();
+		String line;
+		while ((line = this.in.readLine()) != null && !line.trim().equalsIgnoreCase("DONE"))
+			lines.add(line.trim());
+		if (!requireStarted())
+			return;
+		newGame();
+		for (String stone : lines) {
+			String[] fields = stone.split(",");
+			if (fields.length < 3)
+				continue;
+			int move = toMove(Integer.parseInt(fields[0].trim()), Integer.parseInt(fields[1].trim()));
+			play(move, Integer.parseInt(fields[2].trim()) == 1 ? Gobang.POINT_AI : Gobang.POINT_PLAYER);
+		}
+		reply(think());
+	}
+
+	/**
+	 * TAKEBACK：撤销一步，引擎不能撤销，按历史重新摆出局面（搜索树不保留）
+	 */
+	private void takeback(int move) throws IllegalPointException {
+		int index = this.history.size() - 1;
+		while (index >= 0 && this.history.get(index)[0] != move)
+			index--;
+		if (index < 0)
+			throw new IllegalPointException("no stone at " + format(move));
+		List<int[]> moves = new ArrayList<>(this.history);
+		moves.remove(index);
+		newGame();
+		for (int[] played : moves)
+			play(played[0], played[1]);
+	}
+
+	/**
+	 * INFO key value：只处理时间和内存，其它（规则、文件夹等）忽略
+	 */
+	private void info(String args) {
+		String[] pair = args.split("\\s+", 2);
+		if (pair.length < 2)
+			return;
+		switch (pair[0].toLowerCase()) {
+		case "timeout_turn":
+			this.timeoutTurn = Long.parseLong(pair[1]);
+			break;
+		case "timeout_match":
+			this.timeoutMatch = Long.parseLong(pair[1]);
+			this.clock = null;
+			break;
+		case "time_left":
+			this.timeLeft = Long.parseLong(pair[1]);
+			break;
+		case "max_memory":
+			long maxMemory = Long.parseLong(pair[1]);
+			// 置换表的大小在引擎创建时决定，限制改变后下一次需要时重新创建
+			if (maxMemory != this.maxMemory && this.history.isEmpty())
+				dropEngine();
+			this.maxMemory = maxMemory;
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void play(int move, int who) throws IllegalPointException {
+		engine().play(move, who);
+		this.history.add(new int[] { move, who });
+	}
+
+	/**
+	 * 想一步并在引擎中下出：有强制的变化（成五、挡五、VCF、VCT）直接下，其次查开局库，空棋盘下天元，否则在时限内搜索
+	 *
+	 * @return 下的点
+	 */
+	private int think() throws IllegalPointException {
+		GobangEngine engine = engine();
+		Gobang position = engine.getPosition();
+		// 从这里开始计时，威胁空间搜索、查开局库的时间也算在这一步里
+		long start = System.nanoTime();
+		TimeManager clock = clock();
+		int move = engine.threatMove(clock.threatDeadline());
+		if (move == Gobang.NO_MOVE)
+			move = engine.bookMove();
+		if (move == Gobang.NO_MOVE && this.history.isEmpty())
+			move = position.move(this.row / 2, this.col / 2);
+		clock.charge((System.nanoTime() - start) / 1000000);
+		if (move == Gobang.NO_MOVE) {
+			// 搜索结束时棋钟扣除这一步的用时
+			long limit = memoryLimit();
+			SearchResult result = engine.startSearch(clock, progress -> {
+				Runtime runtime = Runtime.getRuntime();
+				if (runtime.totalMemory() - runtime.freeMemory() > limit)
+					engine.stop();
+			}).join();
+			move = result.getBest();
+			if (move == Gobang.NO_MOVE)
+				throw new IllegalPointException("no legal move");
+		} else {
+			clock.finish();
+		}
+		play(move, Gobang.POINT_AI);
+		return move;
+	}
+
+	/**
+	 * 本局的棋钟：整局时限按剩余时间分配，每步不超过每步时限。
+	 * 收到过 INFO time_left 时，剩余时间以它为准（整局不限时的时候忽略）
+	 */
+	private TimeManager clock() {
+		if (this.clock == null)
+			this.clock = new TimeManager(
+					this.timeoutMatch == 0 ? TimeManager.INFINITE : Math.max(1, this.timeoutMatch - TURN_MARGIN), 0);
+		if (this.timeLeft >= 0 && this.timeoutMatch != 0)
+			this.clock.setRemaining(this.timeLeft - TURN_MARGIN);
+		this.timeLeft = -1;
+		this.clock.setMaxTurn(this.timeoutTurn - TURN_MARGIN);
+		return this.clock;
+	}
+
+	/**
+	 * @return 搜索中允许使用的堆内存，字节
+	 */
+	private long memoryLimit() {
+		long heap = Runtime.getRuntime().maxMemory();
+		return (long) (MEMORY_SHARE * (this.maxMemory == 0 ? heap : Math.min(heap, this.maxMemory)));
+	}
+
+	private GobangEngine engine() throws IllegalPointException {
+		if (this.engine == null) {
+			int transpositionSize = this.maxMemory == 0 ? TRANSPOSITION_SIZE
+					: (int) Math.min(TRANSPOSITION_SIZE,
+							this.maxMemory * TRANSPOSITION_SHARE / TRANSPOSITION_ENTRY_BYTES);
+			this.engine = new GobangEngine(this.row, this.col, this.threads, transpositionSize,
+					TreeParallelUCT.VIRTUAL_LOSS);
+			this.engine.setOpeningBook(this.openingBook);
+			// 已经下了的子（例如引擎在局中重新创建）重新摆上
+			for (int[] played : this.history)
+				this.engine.play(played[0], played[1]);
+		}
+		return this.engine;
+	}
+
+	private void dropEngine() {
+		if (this.engine != null) {
+			this.engine.shutdown();
+			this.engine = null;
+		}
+	}
+
+	private void reply(int move) {
+		this.out.println(format(move));
+	}
+
+	/**
+	 * "列,行"转换为引擎的点
+	 */
+	private int parseMove(String args) throws IllegalPointException {
+		String[] xy = args.split(",");
+		return toMove(Integer.parseInt(xy[0].trim()), Integer.parseInt(xy[1].trim()));
+	}
+
+	private int toMove(int column, int row) throws IllegalPointException {
+		if (column < 0 || column >= this.col || row < 0 || row >= this.row)
+			throw new IllegalPointException("illegal point " + column + "," + row);
+		return row * this.col + column;
+	}
+
+	private String format(int move) {
+		return move % this.col + "," + move / this.col;
+	}
+
+	public OpeningBook getOpeningBook() {
+		return openingBook;
+	}
+
+	/**
+	 * @param openingBook
+	 *            开局库，null表示不使用，对之后创建的引擎生效
+	 */
+	public void setOpeningBook(OpeningBook openingBook) {
+		this.openingBook = openingBook;
+		if (this.engine != null)
+			this.engine.setOpeningBook(openingBook);
+	}
+
+	/**
+	 * 参数为开局库文件，没有参数时使用当前目录下的 {@link #BOOK}（存在的话）
+	 */
+	public static void main(String[] args) throws IOException {
+		// 协议要求每行立即输出
+		PrintStream out = new PrintStream(System.out, true, "UTF-8");
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		Piskvork piskvork = new Piskvork(in, out, Runtime.getRuntime().availableProcessors());
+		Path book = Paths.get(args.length > 0 ? args[0] : BOOK);
+		if (args.length > 0 || Files.exists(book))
+			piskvork.setOpeningBook(OpeningBook.open(book));
+		piskvork.run();
+	}
+
+}
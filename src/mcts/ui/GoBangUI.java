@@ -1,24 +1,30 @@
 package mcts.ui;
 
-import java.util.Collections;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
+import javafx.scene.input.KeyCode;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundImage;
 import javafx.scene.layout.BackgroundRepeat;
 import javafx.scene.layout.Pane;
 import javafx.stage.Stage;
 import mcts.entity.Gobang;
-import mcts.entity.GobangUCT;
-import mcts.entity.Node;
+import mcts.entity.GobangEngine;
 import mcts.entity.Observation;
+import mcts.entity.OpeningBook;
 import mcts.entity.Point;
+import mcts.entity.SearchResult;
+import mcts.entity.TimeManager;
+import mcts.entity.TreeParallelUCT;
 
 /**
  * 用JavaFx做的一个五子棋UI界面
@@ -29,9 +35,34 @@ import mcts.entity.Point;
 public class GoBangUI extends Application {
 
 	/**
-	 * 模拟多少秒
+	 * AI一局的总时间，毫秒
 	 */
-	private final static long HOW_MANY_SECONDS = 10 * 1000;
+	private final static long GAME_MILLIS = 5 * 60 * 1000;
+
+	/**
+	 * AI每步的加时，毫秒
+	 */
+	private final static long INCREMENT_MILLIS = 5 * 1000;
+
+	/**
+	 * AI下完以后，是否在玩家思考的时间里后台思考
+	 */
+	private final static boolean PONDER = true;
+
+	/**
+	 * 搜索线程数，默认使用所有核心
+	 */
+	private final static int THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * 置换表大小
+	 */
+	private final static int TRANSPOSITION_SIZE = 1 << 18;
+
+	/**
+	 * 开局库文件（当前目录下），不存在时不使用开局库
+	 */
+	private final static String BOOK = "book.bin";
 
 	/**
 	 * 黑棋图片
@@ -68,12 +99,32 @@ public class GoBangUI extends Application {
 	 */
 	private Map<String, Label> labels = new HashMap<>();
 
+	/**
+	 * 引擎，在自己的线程上搜索
+	 */
+	private final GobangEngine engine = new GobangEngine(row, col, THREADS, TRANSPOSITION_SIZE,
+			TreeParallelUCT.VIRTUAL_LOSS);
+	/**
+	 * AI一方的棋钟
+	 */
+	private final TimeManager timeManager = new TimeManager(GAME_MILLIS, INCREMENT_MILLIS);
+	/**
+	 * 界面上的棋盘，只在界面线程上修改
+	 */
+	private final Gobang gobang = Gobang.getGobang(row, col);
+	/**
+	 * AI是否正在思考，思考时不接受点击
+	 */
+	private boolean thinking;
+
 	@Override
 	public void start(Stage primaryStage) throws Exception {
+		Path book = Paths.get(BOOK);
+		if (Files.exists(book)) {
+			engine.setOpeningBook(OpeningBook.open(book));
+		}
 		int[][] is = new int[row][col];
 		Pane root = new Pane();
-		GobangUCT gobangUCT = new GobangUCT();
-		Gobang gobang = Gobang.getGobang(row, col);
 		for (int i = 0; i < is.length; i++) {
 			int[] js = is[i];
 			for (int j = 0; j < js.length; j++) {
@@ -87,6 +138,9 @@ public class GoBangUI extends Application {
 				labels.put(label.getId(), label);
 				// 给label设置点击事件
 				label.setOnMouseClicked(event -> {
+					if (this.thinking) {
+						return;
+					}
 					try {
 						// 棋盘被点击获得点击的点
 						Label l = (Label) event.getSource();
@@ -97,45 +151,45 @@ public class GoBangUI extends Application {
 						String[] split = l.getId().split(",");
 						int x = Integer.parseInt(split[1]);
 						int y = Integer.parseInt(split[0]);
-						// 创建根节点
-						Node node = new Node(null, Point.newInstance(x, y), gobang);
-						Observation<int[][]> action = gobang.action(Point.newInstance(x, y), Gobang.POINT_PLAYER);
+						int playerMove = Point.newInstance(x, y).toMove(col);
+						Observation<int[][]> action = gobang.action(playerMove, Gobang.POINT_PLAYER);
+						engine.play(playerMove, Gobang.POINT_PLAYER);
 						// 如果结束了 ，就是玩家获胜
 						if (action.isDone()) {
 							System.out.println("PLAYER WIN!");
 						}
-						// 扩展根节点
-						gobangUCT.expansion(node);
-						// 根据快速走子方法，如果没有下法就进行模拟对局
-						Point speedPoint = gobang.speedPoint();
-						Node selection = new Node(node, speedPoint, gobang);
-						if (selection.getPoint() == null) {
-							// 拿到开始时间，一直模拟到设定的时间结束
-							long start = System.currentTimeMillis();
-							while (System.currentTimeMillis() - start < HOW_MANY_SECONDS)
-								// 模拟对局
-								gobangUCT.simulation(node);
-							// 选择一个分数最大的子节点
-							List<Node> childs = node.getChilds();
-							Collections.sort(childs, (node1, node2) -> node1.getValue() == node2.getValue() ? 0
-									: node1.getValue() > node2.getValue() ? 1 : -1);
-							selection = childs.get(childs.size() - 1);
-						} else {
-							// 如果快速走子方法有下法，则拼装数据
-							Gobang speedGobang = (Gobang) gobang.copy();
-							Observation<int[][]> observation = speedGobang.action(speedPoint, Gobang.POINT_AI);
-							selection.setGobang(speedGobang);
-							selection.setObservation(observation);
+						// 先找强制的变化（成五、挡五、VCF、VCT），其次查开局库，如果没有下法就进行模拟对局，
+						// 威胁空间搜索按棋钟限时，用掉的时间算在这一步里
+						long start = System.nanoTime();
+						int aiMove = engine.threatMove(timeManager.threatDeadline());
+						if (aiMove == Gobang.NO_MOVE) {
+							aiMove = engine.bookMove();
 						}
-						// 如果结束，则是AI获胜
-						if (selection.isDone()) {
-							System.out.println("AI WIN!");
+						timeManager.charge((System.nanoTime() - start) / 1000000);
+						if (aiMove != Gobang.NO_MOVE) {
+							timeManager.finish();
+							playAi(aiMove);
+							return;
 						}
-						// 获得label，下AI子
-						Label l2 = labels.get(selection.getPoint().getY() + "," + selection.getPoint().getX());
-						l2.setBackground(count % 2 == 0 ? BLACK_POINT : WIHTE_POINT);
-						count++;
-						gobang.setBroad(selection.getGobang().getBroad());
+						// 从上一步保留下来的子树继续模拟，时间由棋钟分配，局面清楚时提前结束，选择模拟次数最多的点。
+						// 搜索在引擎的线程上进行，界面不会卡住，进度和结果切换回界面线程处理
+						System.out.println("reused visits=" + engine.getReusedVisits()
+								+ (engine.isPonderHit() ? " (ponder hit)" : ""));
+						this.thinking = true;
+						engine.startSearch(timeManager,
+								result -> Platform.runLater(() -> primaryStage.setTitle(progress(result))))
+								.whenComplete((result, e) -> Platform.runLater(() -> {
+									this.thinking = false;
+									primaryStage.setTitle("GoBang");
+									if (e != null) {
+										e.printStackTrace();
+										return;
+									}
+									System.out.print(result.report());
+									System.out.println("budget=" + timeManager.getSoft() + "ms hard="
+											+ timeManager.getHard() + "ms remaining=" + timeManager.getRemaining() + "ms");
+									playAi(result.getBest());
+								}));
 					} catch (Exception e) {
 						e.printStackTrace();
 					}
@@ -145,9 +199,7 @@ public class GoBangUI extends Application {
 		}
 		// 如果AI是黑子，则先在棋盘上中间点放一颗黑棋
 		if (isBlack) {
-			gobang.action(Point.newInstance(row / 2, col / 2), Gobang.POINT_AI);
-			labels.get(row / 2 + "," + col / 2).setBackground(count % 2 == 0 ? BLACK_POINT : WIHTE_POINT);
-			count++;
+			playAi(gobang.move(row / 2, col / 2));
 		}
 		// 棋盘背景图
 		Image image = new Image(this.getClass().getResourceAsStream("/bang.jpg"));
@@ -155,12 +207,54 @@ public class GoBangUI extends Application {
 				new BackgroundImage(image, BackgroundRepeat.NO_REPEAT, BackgroundRepeat.NO_REPEAT, null, null)));
 		// 窗口大小
 		Scene scene = new Scene(root, 470, 480);
+		// 按空格键让AI停止思考，立即按目前的结果下子
+		scene.setOnKeyPressed(event -> {
+			if (event.getCode() == KeyCode.SPACE) {
+				engine.stop();
+			}
+		});
+		primaryStage.setOnCloseRequest(event -> engine.shutdown());
 		// 窗口标题
 		primaryStage.setTitle("GoBang");
 		primaryStage.setScene(scene);
 		primaryStage.show();
 	}
 
+	/**
+	 * AI下子：更新界面上的棋盘、引擎和棋子图片，只在界面线程上调用
+	 * 
+	 * @param aiMove
+	 *            点的编码
+	 */
+	private void playAi(int aiMove) {
+		try {
+			Observation<int[][]> observation = gobang.action(aiMove, Gobang.POINT_AI);
+			engine.play(aiMove, Gobang.POINT_AI);
+			// 如果结束，则是AI获胜；否则在玩家思考的时间里后台思考
+			if (observation.isDone()) {
+				System.out.println("AI WIN!");
+			} else if (PONDER) {
+				engine.ponder();
+			}
+			// 获得label，下AI子
+			Point aiPoint = Point.fromMove(aiMove, col);
+			Label label = labels.get(aiPoint.getY() + "," + aiPoint.getX());
+			label.setBackground(count % 2 == 0 ? BLACK_POINT : WIHTE_POINT);
+			count++;
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 思考进度，显示在窗口标题上
+	 */
+	private static String progress(SearchResult result) {
+		int best = result.getBest();
+		return String.format("GoBang - thinking %.1fs, %d visits, best %s", result.getElapsed() / 1000.0,
+				result.getRoot().getN(), best == Gobang.NO_MOVE ? "-" : Point.fromMove(best, col));
+	}
+
 	public static void main(String[] args) {
 		launch(args);
 	}
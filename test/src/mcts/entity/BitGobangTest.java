@@ -0,0 +1,179 @@
+package mcts.entity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mcts.exception.IllegalPointException;
+
+/**
+ * {@link BitGobang} 与 {@link Gobang} 的对照测试：同样的随机对局中，可下点、是否结束、形势判断、快速走子、
+ * 下子/撤销、复制都应该一致
+ *
+ * @author Jervis
+ *
+ */
+public class BitGobangTest {
+
+	/**
+	 * 每个测试的随机对局数
+	 */
+	private static final int GAMES = 200;
+
+	@Test
+	public void actionMatchesGobang() throws IllegalPointException {
+		Random random = new Random(19);
+		for (int size : new int[] { 15, 19 }) {
+			for (int game = 0; game < GAMES; game++) {
+				Gobang gobang = Gobang.newGobang(size, size);
+				BitGobang bitGobang = new BitGobang(size, size);
+				int who = Gobang.POINT_PLAYER;
+				int move = gobang.move(size / 2, size / 2);
+				for (int step = 0; step < size * size; step++) {
+					boolean done = gobang.action(move, who).isDone();
+					assertEquals("isDone at " + move + "\r\n" + gobang, done, bitGobang.action(move, who).isDone());
+					if (done)
+						break;
+					int[] expected = gobang.illegalPoints(), actual = bitGobang.illegalPoints();
+					Arrays.sort(expected);
+					assertArrayEquals("illegalPoints\r\n" + gobang, expected, actual);
+					if (expected.length == 0)
+						break;
+					assertEquals("formalJudgment\r\n" + gobang, gobang.formalJudgment().getReward(),
+							bitGobang.formalJudgment().getReward(), 0);
+					assertEquals("formalJudgment isDone\r\n" + gobang, gobang.formalJudgment().isDone(),
+							bitGobang.formalJudgment().isDone());
+					assertSpeedPoint(gobang, bitGobang);
+					assertArrayEquals(gobang.getBroad(), bitGobang.getBroad());
+					who = who == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
+					move = actual[random.nextInt(actual.length)];
+				}
+			}
+		}
+	}
+
+	@Test
+	public void candidatesMatchIllegalPoints() throws IllegalPointException {
+		Random random = new Random(7);
+		BitGobang bitGobang = randomPosition(random, 15, 40);
+		int count = bitGobang.candidateCount();
+		int[] candidates = new int[count];
+		for (int i = 0; i < count; i++)
+			candidates[i] = bitGobang.candidateAt(i);
+		assertArrayEquals(bitGobang.illegalPoints(), candidates);
+	}
+
+	@Test
+	public void makeUnmakeRestoresPosition() throws IllegalPointException {
+		Random random = new Random(23);
+		for (int game = 0; game < GAMES; game++) {
+			BitGobang bitGobang = randomPosition(random, 15, 1 + random.nextInt(40));
+			int[][] broad = bitGobang.getBroad();
+			double value = bitGobang.judgmentValue();
+			int[] moves = bitGobang.illegalPoints();
+			int col = bitGobang.getCol();
+			int[] played = new int[Math.min(10, moves.length)];
+			int who = Gobang.POINT_AI;
+			for (int i = 0; i < played.length; i++) {
+				played[i] = moves[random.nextInt(moves.length)];
+				if (!bitGobang.isIllegal(played[i])) {
+					played[i] = Gobang.NO_MOVE;
+					continue;
+				}
+				bitGobang.make(played[i] / col, played[i] % col, who);
+				who = who == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
+			}
+			for (int i = played.length - 1; i >= 0; i--) {
+				if (played[i] != Gobang.NO_MOVE)
+					bitGobang.unmake(played[i] / col, played[i] % col);
+			}
+			assertArrayEquals(broad, bitGobang.getBroad());
+			assertEquals(value, bitGobang.judgmentValue(), 0);
+			// 增量维护的形势判断与重新计算的一致
+			BitGobang fresh = new BitGobang(15, 15);
+			fresh.setBroad(broad);
+			assertEquals(fresh.judgmentValue(), bitGobang.judgmentValue(), 0);
+		}
+	}
+
+	@Test
+	public void copyIsIndependent() throws IllegalPointException {
+		BitGobang bitGobang = randomPosition(new Random(3), 15, 20);
+		double value = bitGobang.judgmentValue();
+		BitGobang copy = (BitGobang) bitGobang.copy();
+		int move = copy.illegalPoints()[0];
+		copy.action(move, Gobang.POINT_AI);
+		assertTrue(bitGobang.isIllegal(move));
+		assertFalse(copy.isIllegal(move));
+		assertEquals(value, bitGobang.judgmentValue(), 0);
+	}
+
+	@Test
+	public void loadMatchesGobang() throws IllegalPointException {
+		Random random = new Random(11);
+		Gobang gobang = Gobang.newGobang(15, 15);
+		int who = Gobang.POINT_AI;
+		gobang.action(7, 7, who);
+		for (int step = 0; step < 30; step++) {
+			int[] moves = gobang.illegalPoints();
+			who = who == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
+			if (gobang.action(moves[random.nextInt(moves.length)], who).isDone())
+				break;
+		}
+		BitGobang bitGobang = new BitGobang(15, 15);
+		bitGobang.load(gobang);
+		assertArrayEquals(gobang.getBroad(), bitGobang.getBroad());
+		assertEquals(gobang.judgmentValue(), bitGobang.judgmentValue(), 0);
+	}
+
+	@Test
+	public void rolloutOnBitboardRestoresPosition() throws IllegalPointException {
+		BitGobang bitGobang = randomPosition(new Random(5), 15, 12);
+		int[][] broad = bitGobang.getBroad();
+		double value = bitGobang.judgmentValue();
+		RolloutEngine engine = new RolloutEngine();
+		for (int i = 0; i < 100; i++) {
+			assertFalse(Double.isNaN(engine.play(bitGobang, Gobang.POINT_PLAYER)));
+		}
+		assertArrayEquals(broad, bitGobang.getBroad());
+		assertEquals(value, bitGobang.judgmentValue(), 0);
+	}
+
+	/**
+	 * 快速走子：两边都没有，或者两边返回的点在两个棋盘上都能连成五子（可下点的顺序不同，返回的点可能不同）
+	 */
+	private static void assertSpeedPoint(Gobang gobang, BitGobang bitGobang) {
+		int expected = gobang.speedPoint(), actual = bitGobang.speedPoint();
+		assertEquals("speedPoint\r\n" + gobang, expected == Gobang.NO_MOVE, actual == Gobang.NO_MOVE);
+		if (actual != Gobang.NO_MOVE) {
+			int x = actual / gobang.getCol(), y = actual % gobang.getCol();
+			assertTrue(gobang.isFive(x, y, Gobang.POINT_AI) || gobang.isFive(x, y, Gobang.POINT_PLAYER));
+		}
+	}
+
+	/**
+	 * 从天元开始随机下若干步，遇到五连提前结束（不下出结束的一步）
+	 */
+	private static BitGobang randomPosition(Random random, int size, int stones) throws IllegalPointException {
+		BitGobang bitGobang = new BitGobang(size, size);
+		int who = Gobang.POINT_AI;
+		bitGobang.action(size / 2, size / 2, who);
+		for (int step = 1; step < stones; step++) {
+			int[] moves = bitGobang.illegalPoints();
+			int move = moves[random.nextInt(moves.length)];
+			who = who == Gobang.POINT_AI ? Gobang.POINT_PLAYER : Gobang.POINT_AI;
+			BitGobang next = (BitGobang) bitGobang.copy();
+			if (next.action(move, who).isDone())
+				break;
+			bitGobang = next;
+		}
+		return bitGobang;
+	}
+
+}